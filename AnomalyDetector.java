@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Finds anomalous readings in one pass over each city's date-ordered rows.
+ * <p>
+ * For every calendar day a city keeps the temperatures of that day from the
+ * windowYears years before the current reading in a small ring, with their
+ * running mean and sum of squared differences.  Each reading is compared to its day's statistics before being
+ * added, so it is judged only against earlier years, and temperatures that fall
+ * out of the window are removed again.  Adding and removing are O(1) updates
+ * (Welford's method), so a city costs one pass over its rows however large the
+ * window.  Temperatures of -99.0 are skipped, and a day needs MIN_BASELINE earlier
+ * readings with some spread before anything is flagged.  Cities are independent
+ * and run in parallel.  Each city's rings hold no more than the most readings
+ * any of its calendar days has, so a window far longer than the data costs no
+ * more memory than one covering it.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class AnomalyDetector {
+
+    /**
+     * Fewest earlier readings of a calendar day needed to judge a reading
+     */
+    static final int MIN_BASELINE = 3;
+
+    private AnomalyDetector() {
+    }
+
+    /**
+     * Finds every anomalous reading of a dataset
+     * @param dataset       the readings
+     * @param windowYears   how many earlier years of each calendar day make the baseline
+     * @param threshold     smallest absolute z-score to report
+     * @return anomalies in index order
+     */
+    static List<TemperatureAnomaly> find(WeatherDataset dataset, int windowYears, double threshold) {
+        return IntStream.range(0, dataset.blockCount()).parallel()
+                .mapToObj(i -> find(dataset.block(i), dataset.blockStart(i), windowYears, threshold))
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /**
+     * Finds the anomalous readings of one city
+     * @param block         the city's rows, in date order
+     * @param firstIndex    index of the block's first reading
+     * @param windowYears   how many earlier years of each calendar day make the baseline
+     * @param threshold     smallest absolute z-score to report
+     * @return anomalies in index order
+     */
+    static List<TemperatureAnomaly> find(CityBlock block, int firstIndex, int windowYears,
+                                         double threshold) {
+        int[] slotRows = new int[CalendarIndex.SLOTS];
+        int capacity = 1;
+        for (int row = 0; row < block.size; row++) {
+            int slot = CalendarIndex.slot(block.months[row], block.days[row]);
+            if (slot >= 0) {
+                capacity = Math.max(capacity, Math.min(windowYears, ++slotRows[slot]));
+            }
+        }
+        Baselines baselines = new Baselines(capacity);
+        ArrayList<TemperatureAnomaly> anomalies = new ArrayList<>();
+        for (int row = 0; row < block.size; row++) {
+            double temp = block.avgTemps[row];
+            int slot = CalendarIndex.slot(block.months[row], block.days[row]);
+            if (temp == TemperatureKernels.MISSING || slot < 0) {
+                continue;
+            }
+            int year = block.years[row];
+            while (baselines.counts[slot] > 0
+                    && baselines.oldestYear(slot) < (long) year - windowYears) {
+                baselines.removeOldest(slot);
+            }
+            int count = baselines.counts[slot];
+            if (count >= MIN_BASELINE) {
+                double deviation = Math.sqrt(baselines.squares[slot] / (count - 1));
+                if (deviation > 0.0) {
+                    double zScore = (temp - baselines.means[slot]) / deviation;
+                    if (Math.abs(zScore) >= threshold) {
+                        anomalies.add(new TemperatureAnomaly(firstIndex + row, block.reading(row),
+                                baselines.means[slot], deviation, zScore));
+                    }
+                }
+            }
+            if (count == windowYears) {
+                baselines.removeOldest(slot);
+            }
+            baselines.add(slot, year, temp);
+        }
+        return anomalies.isEmpty() ? List.of() : anomalies;
+    }
+
+    /**
+     * Running statistics of the last windowYears temperatures of every calendar
+     * slot, with the temperatures themselves kept in a ring per slot so the oldest
+     * can be taken out again
+     */
+    private static final class Baselines {
+
+        private final int capacity;
+        private final int[] ringYears;
+        private final double[] ringTemps;
+        private final int[] heads = new int[CalendarIndex.SLOTS];
+        final int[] counts = new int[CalendarIndex.SLOTS];
+        final double[] means = new double[CalendarIndex.SLOTS];
+
+        /**
+         * Sum of squared differences from the mean of each slot
+         */
+        final double[] squares = new double[CalendarIndex.SLOTS];
+
+        Baselines(int capacity) {
+            this.capacity = capacity;
+            int length = Math.toIntExact((long) CalendarIndex.SLOTS * capacity);
+            ringYears = new int[length];
+            ringTemps = new double[length];
+        }
+
+        int oldestYear(int slot) {
+            return ringYears[slot * capacity + heads[slot]];
+        }
+
+        void add(int slot, int year, double temp) {
+            int position = slot * capacity + (heads[slot] + counts[slot]) % capacity;
+            ringYears[position] = year;
+            ringTemps[position] = temp;
+            int count = ++counts[slot];
+            double delta = temp - means[slot];
+            means[slot] += delta / count;
+            squares[slot] += delta * (temp - means[slot]);
+        }
+
+        void removeOldest(int slot) {
+            double temp = ringTemps[slot * capacity + heads[slot]];
+            heads[slot] = (heads[slot] + 1) % capacity;
+            int count = --counts[slot];
+            if (count == 0) {
+                means[slot] = 0.0;
+                squares[slot] = 0.0;
+                return;
+            }
+            double oldMean = means[slot];
+            means[slot] = oldMean + (oldMean - temp) / count;
+            squares[slot] = Math.max(0.0, squares[slot] - (temp - oldMean) * (temp - means[slot]));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+
+/**
+ * Counts of how a result cache has been used
+ * @param hits          lookups answered from the cache
+ * @param misses        lookups that had to be calculated
+ * @param evictions     results dropped to stay within the size limit
+ */
+public record CacheStats(long hits, long misses, long evictions) {
+
+    /**
+     * Calculates the share of lookups answered from the cache
+     * @return hits divided by all lookups, or 0.0 if there have been none
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Positions of a block's readings grouped by calendar day.
+ * For each (month, day) the rows of that day are stored in ascending order,
+ * so a day's readings inside any row range can be found with two binary searches.
+ * The index covers the block's rows as they were when it was built; rows appended
+ * later are past rowCount and have to be checked directly until the index is rebuilt.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class CalendarIndex {
+
+    /**
+     * One slot for every month and day pair, including days a month doesn't have
+     */
+    static final int SLOTS = 12 * 31;
+
+    /**
+     * Start of each slot in rows, followed by the end of the last slot
+     */
+    private final int[] offsets;
+
+    /**
+     * Block rows ordered by slot, then by row
+     */
+    private final int[] rows;
+
+    /**
+     * Number of block rows the index covers
+     */
+    private final int rowCount;
+
+    /**
+     * Builds the index for a block with a counting sort over its rows
+     * @param block     the block to index
+     */
+    CalendarIndex(CityBlock block) {
+        rowCount = block.size;
+        offsets = new int[SLOTS + 1];
+        for (int row = 0; row < block.size; row++) {
+            int slot = slot(block.months[row], block.days[row]);
+            if (slot >= 0) {
+                offsets[slot + 1]++;
+            }
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            offsets[slot + 1] += offsets[slot];
+        }
+        rows = new int[offsets[SLOTS]];
+        int[] next = Arrays.copyOf(offsets, SLOTS);
+        for (int row = 0; row < block.size; row++) {
+            int slot = slot(block.months[row], block.days[row]);
+            if (slot >= 0) {
+                rows[next[slot]++] = row;
+            }
+        }
+    }
+
+    private CalendarIndex(int[] offsets, int[] rows, int rowCount) {
+        this.offsets = offsets;
+        this.rows = rows;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Writes the index for a snapshot
+     * @param out   the snapshot stream
+     * @throws IOException if it can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(rowCount);
+        out.writeInt(rows.length);
+        WeatherSnapshot.writeInts(out, offsets, offsets.length);
+        WeatherSnapshot.writeInts(out, rows, rows.length);
+    }
+
+    /**
+     * Reads an index written by write
+     * @param in    the snapshot, positioned at the index
+     * @return the index
+     */
+    static CalendarIndex read(ByteBuffer in) {
+        int rowCount = in.getInt();
+        int length = in.getInt();
+        int[] offsets = WeatherSnapshot.readInts(in, SLOTS + 1);
+        return new CalendarIndex(offsets, WeatherSnapshot.readInts(in, length), rowCount);
+    }
+
+    /**
+     * Finds the slot of a calendar day
+     * @param month     month from 1 to 12
+     * @param day       day from 1 to 31
+     * @return the slot, or -1 if the month or day is out of range
+     */
+    static int slot(int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+        return (month - 1) * 31 + day - 1;
+    }
+
+    /**
+     * Retrieves the number of block rows the index covers
+     * @return rows from 0 up to this count are indexed
+     */
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Finds where the rows of a slot in a row range start
+     * @param slot      the calendar slot
+     * @param fromRow   first row of the range
+     * @return position in rows of the first matching row
+     */
+    int start(int slot, int fromRow) {
+        return lowerBound(offsets[slot], offsets[slot + 1], fromRow);
+    }
+
+    /**
+     * Finds where the rows of a slot in a row range end
+     * @param slot      the calendar slot
+     * @param toRow     row after the last row of the range
+     * @return position in rows after the last matching row
+     */
+    int end(int slot, int toRow) {
+        return lowerBound(offsets[slot], offsets[slot + 1], toRow);
+    }
+
+    /**
+     * Retrieves the stored rows, so a view can read rows by position
+     * without copying them
+     * @return block rows ordered by slot, then by row; must not be changed
+     */
+    int[] rows() {
+        return rows;
+    }
+
+    /**
+     * Estimates the heap used by the index
+     * @return estimated size in bytes
+     */
+    long estimateHeapBytes() {
+        return 16 + 2 * 16 + 4L * offsets.length + 4L * rows.length;
+    }
+
+    private int lowerBound(int low, int high, int row) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows[mid] < row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,538 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds every reading for a single location as primitive columns.
+ * The location strings are stored once per block, so they act as the
+ * dictionary entry that every row of the block shares.
+ * <p>
+ * A block is filled with add while loading and then sealed.  A sealed block is
+ * never changed again; append returns a new block that may share the columns,
+ * writing only past the end of this block's rows, so readers of this block are
+ * not affected.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class CityBlock {
+
+    /**
+     * Starting capacity of the columns while the block is being filled
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Heap used by one RegressionAccumulator: a header, a long and four doubles
+     */
+    private static final long ACCUMULATOR_BYTES = 16 + 8 + 4 * 8;
+
+    final String region;
+    final String country;
+    final String state;
+    final String city;
+
+    int[] months;
+    int[] days;
+    int[] years;
+    double[] avgTemps;
+    int size;
+
+    /**
+     * Calendar day index, set when the block is sealed
+     */
+    CalendarIndex calendar;
+
+    /**
+     * Monthly and yearly temperature totals, set when the block is sealed
+     */
+    TemperatureRollup rollup;
+
+    /**
+     * Bitmaps of the rows and days with temperatures, built when the block is
+     * sealed, or on first use for a block made by append
+     */
+    private volatile MissingDataIndex missingData;
+
+    /**
+     * Regression sums for each calendar slot, built the first time they are needed
+     */
+    private volatile RegressionAccumulator[] daySlopes;
+
+    /**
+     * Creates an empty block for the given location
+     * @param region    region of the location
+     * @param country   country of the location
+     * @param state     state of the location, may be blank
+     * @param city      city of the location
+     */
+    CityBlock(String region, String country, String state, String city) {
+        this.region = region;
+        this.country = country;
+        this.state = state;
+        this.city = city;
+        months = new int[INITIAL_CAPACITY];
+        days = new int[INITIAL_CAPACITY];
+        years = new int[INITIAL_CAPACITY];
+        avgTemps = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates a block over already filled columns
+     * @param region    region of the location
+     * @param country   country of the location
+     * @param state     state of the location, may be blank
+     * @param city      city of the location
+     * @param months    month of each reading
+     * @param days      day of each reading
+     * @param years     year of each reading
+     * @param avgTemps  average temperature of each reading
+     */
+    CityBlock(String region, String country, String state, String city,
+              int[] months, int[] days, int[] years, double[] avgTemps) {
+        this(region, country, state, city, months, days, years, avgTemps, months.length);
+    }
+
+    private CityBlock(String region, String country, String state, String city,
+                      int[] months, int[] days, int[] years, double[] avgTemps, int size) {
+        this.region = region;
+        this.country = country;
+        this.state = state;
+        this.city = city;
+        this.months = months;
+        this.days = days;
+        this.years = years;
+        this.avgTemps = avgTemps;
+        this.size = size;
+    }
+
+    /**
+     * Appends one reading to the end of the block, growing the columns if needed
+     * @param month     month of the reading
+     * @param day       day of the reading
+     * @param year      year of the reading
+     * @param avgTemp   average temperature of the reading
+     */
+    void add(int month, int day, int year, double avgTemp) {
+        if (size == months.length) {
+            grow(size + 1);
+        }
+        months[size] = month;
+        days[size] = day;
+        years[size] = year;
+        avgTemps[size] = avgTemp;
+        size++;
+    }
+
+    /**
+     * Appends every reading of another block for the same location
+     * @param other     block whose rows are copied after this block's rows
+     */
+    void addAll(CityBlock other) {
+        if (size + other.size > months.length) {
+            grow(size + other.size);
+        }
+        System.arraycopy(other.months, 0, months, size, other.size);
+        System.arraycopy(other.days, 0, days, size, other.size);
+        System.arraycopy(other.years, 0, years, size, other.size);
+        System.arraycopy(other.avgTemps, 0, avgTemps, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Merges blocks for the same location into one block in date order.  Each step
+     * takes the part with the earliest next date and copies its whole run of rows up
+     * to the next date of any other part, so parts covering separate years are just
+     * joined.  On equal dates the earlier part wins: rows of a later part with a date
+     * an earlier part has are dropped, as WeatherReading.equals would match them,
+     * while rows sharing a date within one part are all kept.
+     * @param region    region of the merged block
+     * @param country   country of the merged block
+     * @param state     state of the merged block
+     * @param city      city of the merged block
+     * @param parts     blocks for the location, one per source such as a shard, in
+     *                  priority order; their rows are put in date order first
+     * @return the merged block, trimmed
+     */
+    static CityBlock merge(String region, String country, String state, String city,
+                           List<CityBlock> parts) {
+        int total = 0;
+        for (CityBlock part : parts) {
+            part.sortByDate();
+            total += part.size;
+        }
+        CityBlock merged = new CityBlock(region, country, state, city,
+                new int[total], new int[total], new int[total], new double[total], 0);
+        int[] positions = new int[parts.size()];
+        int lastKey = Integer.MIN_VALUE;
+        int lastPart = -1;
+        while (true) {
+            int best = -1;
+            int bestKey = 0;
+            int next = -1;
+            int nextKey = Integer.MAX_VALUE;
+            for (int p = 0; p < positions.length; p++) {
+                CityBlock part = parts.get(p);
+                if (positions[p] < part.size) {
+                    int key = part.dateKey(positions[p]);
+                    if (best < 0 || key < bestKey) {
+                        next = best;
+                        nextKey = best < 0 ? Integer.MAX_VALUE : bestKey;
+                        best = p;
+                        bestKey = key;
+                    } else if (key < nextKey) {
+                        next = p;
+                        nextKey = key;
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            CityBlock part = parts.get(best);
+            int row = positions[best];
+            for (; row < part.size; row++) {
+                int key = part.dateKey(row);
+                if (key > nextKey || key == nextKey && next < best) {
+                    break;
+                }
+                if (key != lastKey || best == lastPart) {
+                    merged.add(part.months[row], part.days[row], part.years[row], part.avgTemps[row]);
+                    lastKey = key;
+                    lastPart = best;
+                }
+            }
+            positions[best] = row;
+        }
+        merged.trim();
+        return merged;
+    }
+
+    /**
+     * Makes sure the columns can hold at least the given number of rows
+     * @param minCapacity   the number of rows needed
+     */
+    void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, months.length + (months.length >> 1));
+        months = Arrays.copyOf(months, capacity);
+        days = Arrays.copyOf(days, capacity);
+        years = Arrays.copyOf(years, capacity);
+        avgTemps = Arrays.copyOf(avgTemps, capacity);
+    }
+
+    /**
+     * Releases any spare capacity once loading is done
+     */
+    void trim() {
+        if (months.length != size) {
+            months = Arrays.copyOf(months, size);
+            days = Arrays.copyOf(days, size);
+            years = Arrays.copyOf(years, size);
+            avgTemps = Arrays.copyOf(avgTemps, size);
+        }
+    }
+
+    /**
+     * Finishes loading: puts the rows in date order and builds the calendar day index,
+     * the monthly rollup and the missing data index
+     */
+    void seal() {
+        sortByDate();
+        calendar = new CalendarIndex(this);
+        rollup = new TemperatureRollup(this);
+        missingData = new MissingDataIndex(this);
+    }
+
+    /**
+     * Seals a block whose rows are already in date order with indexes built for
+     * it earlier, such as ones read back from a snapshot, so nothing is re-sorted
+     * or rebuilt
+     * @param calendar      the block's calendar index
+     * @param rollup        the block's temperature rollup
+     * @param missingData   the block's missing data index
+     */
+    void seal(CalendarIndex calendar, TemperatureRollup rollup, MissingDataIndex missingData) {
+        this.calendar = calendar;
+        this.rollup = rollup;
+        this.missingData = missingData;
+    }
+
+    /**
+     * Creates the next version of this sealed block with more readings added.
+     * Readings dated on or after this block's last reading are written past the end
+     * of the shared columns, growing them when full, and the calendar index is only
+     * rebuilt once enough unindexed rows have built up.  Older readings make a
+     * merged copy of the block instead.  The rollup, and the regression sums if
+     * built, are copied and updated with the new readings only.  The missing data
+     * index is rebuilt the first time it is used.
+     * @param batch     new readings for this location, in any order
+     * @return a sealed block holding this block's readings followed by the batch
+     */
+    CityBlock append(CityBlock batch) {
+        batch.sortByDate();
+        int total = size + batch.size;
+        CityBlock next;
+        if (size == 0 || batch.size == 0 || batch.dateKey(0) >= dateKey(size - 1)) {
+            int[] nextMonths = months;
+            int[] nextDays = days;
+            int[] nextYears = years;
+            double[] nextTemps = avgTemps;
+            if (total > months.length) {
+                int capacity = Math.max(total, size + (size >> 1));
+                nextMonths = Arrays.copyOf(months, capacity);
+                nextDays = Arrays.copyOf(days, capacity);
+                nextYears = Arrays.copyOf(years, capacity);
+                nextTemps = Arrays.copyOf(avgTemps, capacity);
+            }
+            System.arraycopy(batch.months, 0, nextMonths, size, batch.size);
+            System.arraycopy(batch.days, 0, nextDays, size, batch.size);
+            System.arraycopy(batch.years, 0, nextYears, size, batch.size);
+            System.arraycopy(batch.avgTemps, 0, nextTemps, size, batch.size);
+            next = new CityBlock(region, country, state, city, nextMonths, nextDays,
+                    nextYears, nextTemps, total);
+            int unindexed = total - calendar.rowCount();
+            next.calendar = unindexed > Math.max(64, calendar.rowCount() >> 3)
+                    ? new CalendarIndex(next) : calendar;
+            next.rollup = rollup.copy();
+            next.rollup.add(batch);
+        } else {
+            next = new CityBlock(region, country, state, city, new int[total],
+                    new int[total], new int[total], new double[total], 0);
+            next.addAll(this);
+            next.addAll(batch);
+            next.seal();
+        }
+
+        RegressionAccumulator[] slopes = daySlopes;
+        if (slopes != null) {
+            RegressionAccumulator[] nextSlopes = new RegressionAccumulator[slopes.length];
+            for (int slot = 0; slot < slopes.length; slot++) {
+                nextSlopes[slot] = new RegressionAccumulator();
+                nextSlopes[slot].merge(slopes[slot]);
+            }
+            addDaySlopes(nextSlopes, batch);
+            next.daySlopes = nextSlopes;
+        }
+        return next;
+    }
+
+    /**
+     * Retrieves the bitmaps of the rows and days that have temperatures
+     * @return the index
+     */
+    MissingDataIndex missingData() {
+        MissingDataIndex index = missingData;
+        if (index == null) {
+            index = new MissingDataIndex(this);
+            missingData = index;
+        }
+        return index;
+    }
+
+    /**
+     * Adds the temperatures of a range of rows against their years to a regression,
+     * ignoring -99.0.  When only a few rows are missing, the kernel runs over each
+     * run of rows with temperatures without checking them one by one; otherwise it
+     * checks every row in one call.
+     * @param from  first row
+     * @param to    row after the last row
+     * @param into  the regression to add to
+     */
+    void regression(int from, int to, RegressionAccumulator into) {
+        if (from >= to) {
+            return;
+        }
+        CompressedBitmap validRows = missingData().validRows;
+        int valid = validRows.cardinality(from, to);
+        int missing = to - from - valid;
+        TemperatureKernels kernels = TemperatureKernels.get();
+        if (missing == 0) {
+            kernels.regression(years, avgTemps, from, to - from, false, into);
+        } else if (missing <= (to - from) >> 4) {
+            validRows.forEachRun(from, to,
+                    (start, end) -> kernels.regression(years, avgTemps, start, end - start, false, into));
+        } else if (valid > 0) {
+            kernels.regression(years, avgTemps, from, to - from, true, into);
+        }
+    }
+
+    /**
+     * Retrieves the regression sums of temperature against year for each calendar
+     * slot, ignoring temperatures of -99.0.  They are built on first use and then
+     * kept current by append.  The returned accumulators must not be changed.
+     * @return one accumulator per calendar slot
+     */
+    RegressionAccumulator[] daySlopes() {
+        RegressionAccumulator[] slopes = daySlopes;
+        if (slopes == null) {
+            slopes = new RegressionAccumulator[CalendarIndex.SLOTS];
+            for (int slot = 0; slot < slopes.length; slot++) {
+                slopes[slot] = new RegressionAccumulator();
+            }
+            addDaySlopes(slopes, this);
+            daySlopes = slopes;
+        }
+        return slopes;
+    }
+
+    private static void addDaySlopes(RegressionAccumulator[] slopes, CityBlock rows) {
+        for (int row = 0; row < rows.size; row++) {
+            int slot = CalendarIndex.slot(rows.months[row], rows.days[row]);
+            if (slot >= 0 && rows.avgTemps[row] != -99.0) {
+                slopes[slot].add(rows.years[row], rows.avgTemps[row]);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the year of every reading in ascending order, sharing the year
+     * column when it is already in order and exactly the right length
+     * @return sorted years, one per reading
+     */
+    int[] sortedYears() {
+        for (int row = 1; row < size; row++) {
+            if (years[row - 1] > years[row]) {
+                int[] sorted = Arrays.copyOf(years, size);
+                Arrays.sort(sorted);
+                return sorted;
+            }
+        }
+        return years.length == size ? years : Arrays.copyOf(years, size);
+    }
+
+    /**
+     * Puts the rows in date order, keeping rows with the same date in their current order.
+     * Does nothing when the rows are already in order, which is the usual case.
+     */
+    void sortByDate() {
+        for (int row = 1; row < size; row++) {
+            if (dateKey(row - 1) > dateKey(row)) {
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = (long) dateKey(i) << 32 | i;
+                }
+                Arrays.sort(keys);
+                int[] sortedMonths = new int[size];
+                int[] sortedDays = new int[size];
+                int[] sortedYears = new int[size];
+                double[] sortedTemps = new double[size];
+                for (int i = 0; i < size; i++) {
+                    int from = (int) keys[i];
+                    sortedMonths[i] = months[from];
+                    sortedDays[i] = days[from];
+                    sortedYears[i] = years[from];
+                    sortedTemps[i] = avgTemps[from];
+                }
+                months = sortedMonths;
+                days = sortedDays;
+                years = sortedYears;
+                avgTemps = sortedTemps;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the first row dated on or after a date, using the block's date order
+     * @param dateKey   packed date as made by dateKey
+     * @return the first row with a date key at least dateKey, or size if there is none
+     */
+    int firstRowFrom(int dateKey) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dateKey(mid) < dateKey) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Packs a row's date into an int that sorts the same way as the date
+     * @param row   row inside the block
+     * @return year * 10000 + month * 100 + day
+     */
+    int dateKey(int row) {
+        return years[row] * 10000 + months[row] * 100 + days[row];
+    }
+
+    /**
+     * Checks if this block is for the given location.  A location is a country,
+     * state and city, the fields WeatherReading.equals compares, so the region is
+     * not checked.
+     * @param country   country to check
+     * @param state     state to check
+     * @param city      city to check
+     * @return true if all three strings match
+     */
+    boolean isLocation(String country, String state, String city) {
+        return this.city.equals(city) && this.state.equals(state) && this.country.equals(country);
+    }
+
+    /**
+     * Makes the key that identifies a location's block
+     * @param country   country of the location
+     * @param state     state of the location
+     * @param city      city of the location
+     * @return the key, equal for two locations exactly when isLocation would match them
+     */
+    static String locationKey(String country, String state, String city) {
+        return country + '\n' + state + '\n' + city;
+    }
+
+    /**
+     * Builds a WeatherReading for a row of this block
+     * @param row   row inside the block
+     * @return a new WeatherReading sharing this block's location strings
+     */
+    WeatherReading reading(int row) {
+        return new WeatherReading(region, country, state, city, months[row], days[row],
+                years[row], avgTemps[row]);
+    }
+
+    /**
+     * Estimates the heap used by this block's columns and by every index built over
+     * them so far: the calendar index, rollup, missing data bitmaps and day slopes.
+     * The location strings are shared with other blocks, so they are not included.
+     * @return estimated size in bytes
+     */
+    long estimateHeapBytes() {
+        long bytes = 16 + 4L * 4 + 4L * 4 + 4 + 4L * 4;
+        bytes += 3 * arrayBytes(months.length, 4) + arrayBytes(avgTemps.length, 8);
+        if (calendar != null) {
+            bytes += calendar.estimateHeapBytes();
+        }
+        if (rollup != null) {
+            bytes += rollup.estimateHeapBytes();
+        }
+        MissingDataIndex index = missingData;
+        if (index != null) {
+            bytes += index.estimateHeapBytes();
+        }
+        RegressionAccumulator[] slopes = daySlopes;
+        if (slopes != null) {
+            bytes += arrayBytes(slopes.length, 4) + slopes.length * ACCUMULATOR_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap used by a string
+     * @param value     the string
+     * @return estimated size in bytes, assuming one byte per character
+     */
+    static long stringBytes(String value) {
+        return 24 + arrayBytes(value.length(), 1);
+    }
+
+    private static long arrayBytes(int length, int elementSize) {
+        return align(16 + (long) length * elementSize);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
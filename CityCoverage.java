@@ -0,0 +1,30 @@
+import java.time.LocalDate;
+
+/**
+ * How complete a city's temperature record is over a range of years.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ * @param region            region of the city
+ * @param country           country of the city
+ * @param state             state of the city, may be blank
+ * @param city              name of the city
+ * @param startingIndex     index of the city's first reading
+ * @param validDays         calendar days in the years with a temperature that isn't -99.0
+ * @param days              calendar days in the years
+ * @param longestGapStart   first day of the longest run of days without a temperature
+ *                          between two days with one, or null if there is no such run
+ * @param longestGapDays    length of that run in days, or 0
+ */
+public record CityCoverage(String region, String country, String state, String city,
+                           int startingIndex, int validDays, int days,
+                           LocalDate longestGapStart, int longestGapDays) {
+
+    /**
+     * Calculates the share of days with a temperature
+     * @return validDays / days, from 0.0 to 1.0
+     */
+    public double coverage() {
+        return days == 0 ? 0.0 : (double) validDays / days;
+    }
+}
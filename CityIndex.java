@@ -0,0 +1,128 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable dictionary of the locations in a set of blocks.
+ * Each location, a country, state and city with one block, gets a dense int id
+ * in country, state, city order, so every city of a country or state has ids in
+ * one run.  The bounds of each run are kept too, so no lookup ever searches or
+ * sorts the readings.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class CityIndex {
+
+    private static final int[] EMPTY_RANGE = {0, 0};
+
+    /**
+     * Block positions by country, then state, then city
+     */
+    private final HashMap<String, HashMap<String, HashMap<String, Integer>>> positions =
+            new HashMap<>();
+
+    /**
+     * First and end location id of each country, and of each state in a country
+     */
+    private final HashMap<String, int[]> countryRanges = new HashMap<>();
+    private final HashMap<String, HashMap<String, int[]>> stateRanges = new HashMap<>();
+
+    /**
+     * Block position of each location id
+     */
+    private final int[] byLocation;
+
+    /**
+     * Builds the index for a set of blocks
+     * @param blocks    blocks in reading order, no two for the same location
+     * @throws IllegalArgumentException if two blocks are for the same location
+     */
+    CityIndex(CityBlock[] blocks) {
+        for (int i = 0; i < blocks.length; i++) {
+            CityBlock block = blocks[i];
+            Integer previous = positions.computeIfAbsent(block.country, country -> new HashMap<>())
+                    .computeIfAbsent(block.state, state -> new HashMap<>())
+                    .put(block.city, i);
+            if (previous != null) {
+                throw new IllegalArgumentException("Two blocks are for the same location.");
+            }
+        }
+        Comparator<Integer> order = Comparator.<Integer, String>comparing(i -> blocks[i].country)
+                .thenComparing(i -> blocks[i].state).thenComparing(i -> blocks[i].city);
+        byLocation = IntStream.range(0, blocks.length).boxed().sorted(order)
+                .mapToInt(Integer::intValue).toArray();
+        for (int i = 0; i < blocks.length; i++) {
+            int id = i;
+            CityBlock block = blocks[byLocation[id]];
+            countryRanges.computeIfAbsent(block.country, country -> new int[]{id, id})[1] = id + 1;
+            stateRanges.computeIfAbsent(block.country, country -> new HashMap<>())
+                    .computeIfAbsent(block.state, state -> new int[]{id, id})[1] = id + 1;
+        }
+    }
+
+    /**
+     * Retrieves the number of locations
+     * @return count of blocks
+     */
+    int size() {
+        return byLocation.length;
+    }
+
+    /**
+     * Finds the block of a location id
+     * @param locationId    id of the location, in country, state, city order
+     * @return position of the block in reading order
+     */
+    int blockAt(int locationId) {
+        return byLocation[locationId];
+    }
+
+    /**
+     * Finds the first location id of a country or of a state in a country
+     * @param country   the country of interest
+     * @param state     the state of interest, or null for the whole country
+     * @return the first matching location id, equal to end if there are none
+     */
+    int first(String country, String state) {
+        return range(country, state)[0];
+    }
+
+    /**
+     * Finds the end of the location ids of a country or of a state in a country
+     * @param country   the country of interest
+     * @param state     the state of interest, or null for the whole country
+     * @return the location id after the last matching one
+     */
+    int end(String country, String state) {
+        return range(country, state)[1];
+    }
+
+    private int[] range(String country, String state) {
+        if (state == null) {
+            return countryRanges.getOrDefault(country, EMPTY_RANGE);
+        }
+        HashMap<String, int[]> states = stateRanges.get(country);
+        return states == null ? EMPTY_RANGE : states.getOrDefault(state, EMPTY_RANGE);
+    }
+
+    /**
+     * Finds the block for a city
+     * @param country   the country of interest
+     * @param state     the state of interest
+     * @param city      the city of interest
+     * @return position of the city's block, or -1 if there are no readings for it
+     */
+    int get(String country, String state, String city) {
+        HashMap<String, HashMap<String, Integer>> states = positions.get(country);
+        if (states == null) {
+            return -1;
+        }
+        HashMap<String, Integer> cities = states.get(state);
+        if (cities == null) {
+            return -1;
+        }
+        Integer position = cities.get(city);
+        return position == null ? -1 : position;
+    }
+}
@@ -10,4 +10,44 @@
  * @param years
  */
 public record CityListStats(int startingIndex, int count, int[] years) {
+
+    /**
+     * Retrieves the years of the city's readings.
+     * Stats are shared between lookups, so this returns a copy
+     * that the caller is free to change.  Use yearCount and year
+     * to read the years without copying them.
+     * @return a copy of the sorted years, one per reading
+     */
+    @Override
+    public int[] years() {
+        return years.clone();
+    }
+
+    /**
+     * Creates the same stats for readings that moved to another starting index,
+     * sharing the years
+     * @param startingIndex     the new starting index
+     * @return the moved stats
+     */
+    CityListStats movedTo(int startingIndex) {
+        return new CityListStats(startingIndex, count, years);
+    }
+
+    /**
+     * Retrieves the number of years, one per reading
+     * @return count of years
+     */
+    public int yearCount() {
+        return years.length;
+    }
+
+    /**
+     * Retrieves one year without copying the others
+     * @param index     position of the year; must be from 0 to yearCount() - 1
+     * @return the year at that position in sorted order
+     * @throws IndexOutOfBoundsException if index not in valid range
+     */
+    public int year(int index) {
+        return years[index];
+    }
 }
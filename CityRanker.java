@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Ranks cities by a measure in one parallel pass over the blocks, keeping only
+ * the best k seen so far in a bounded heap per thread, so nothing is sorted but
+ * the final k.  Mean and extreme temperatures come from each block's rollup, one
+ * cell per year; warming slopes run the regression kernel over the block's rows
+ * in the year range, which are found by binary search since rows are in date order,
+ * stepping over missing temperatures a run at a time.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class CityRanker {
+
+    private CityRanker() {
+    }
+
+    /**
+     * Finds the best k cities for a measure
+     * @param dataset   the readings
+     * @param measure   what to rank by
+     * @param k         how many cities to return, at least 1
+     * @param region    region to match, or null for any
+     * @param country   country to match, or null for any
+     * @param fromYear  first year to count
+     * @param toYear    last year to count
+     * @return up to k rankings, best first, ties in reading order
+     */
+    static List<CityRanking> rank(WeatherDataset dataset, RankingMeasure measure, int k,
+                                  String region, String country, int fromYear, int toYear) {
+        Comparator<CityRanking> order = order(measure);
+        return IntStream.range(0, dataset.blockCount()).parallel()
+                .mapToObj(i -> {
+                    CityBlock block = dataset.block(i);
+                    if (region != null && !block.region.equals(region)
+                            || country != null && !block.country.equals(country)) {
+                        return null;
+                    }
+                    return measure(block, dataset.blockStart(i), measure, fromYear, toYear);
+                })
+                .collect(() -> new TopK(k, order), TopK::offer, TopK::merge)
+                .sorted();
+    }
+
+    /**
+     * Orders rankings best first
+     * @param measure   what the rankings are by
+     * @return the order
+     */
+    static Comparator<CityRanking> order(RankingMeasure measure) {
+        Comparator<CityRanking> byValue = Comparator.comparingDouble(CityRanking::value);
+        return (measure.ascending ? byValue : byValue.reversed())
+                .thenComparingInt(CityRanking::startingIndex);
+    }
+
+    /**
+     * Measures one city
+     * @return the city's ranking, or null if it has too few temperatures in the years,
+     * or all of them in one year for a slope
+     */
+    private static CityRanking measure(CityBlock block, int startingIndex, RankingMeasure measure,
+                                       int fromYear, int toYear) {
+        double value;
+        int count;
+        if (measure == RankingMeasure.FASTEST_WARMING) {
+            int from = block.firstRowFrom(yearKey(fromYear));
+            int to = block.firstRowFrom(yearKey(toYear + 1L));
+            RegressionAccumulator accumulator = new RegressionAccumulator();
+            block.regression(from, to, accumulator);
+            count = (int) accumulator.count();
+            if (count < 2) {
+                return null;
+            }
+            value = accumulator.slope();
+            if (!Double.isFinite(value)) {
+                return null;
+            }
+        } else {
+            TemperatureSummary summary = block.rollup.yearRange(fromYear, toYear);
+            count = summary.count();
+            if (count == 0) {
+                return null;
+            }
+            value = switch (measure) {
+                case HOTTEST_MEAN, COLDEST_MEAN -> summary.mean();
+                case HIGHEST_TEMPERATURE -> summary.max();
+                default -> summary.min();
+            };
+        }
+        return new CityRanking(block.region, block.country, block.state, block.city,
+                startingIndex, value, count);
+    }
+
+    /**
+     * Packs the first day of a year into a date key, clamped to the int range
+     * @param year  the year
+     * @return a key below the key of every date in the year
+     */
+    private static int yearKey(long year) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, year * 10000));
+    }
+
+    /**
+     * The best k rankings offered so far.  The heap's head is the worst of them,
+     * so a new ranking only has to beat the head to get in.
+     */
+    static final class TopK {
+
+        private final int k;
+        private final Comparator<CityRanking> order;
+        private final PriorityQueue<CityRanking> heap;
+
+        TopK(int k, Comparator<CityRanking> order) {
+            this.k = k;
+            this.order = order;
+            heap = new PriorityQueue<>(Math.min(k, 1024) + 1, order.reversed());
+        }
+
+        void offer(CityRanking ranking) {
+            if (ranking == null) {
+                return;
+            }
+            if (heap.size() < k) {
+                heap.add(ranking);
+            } else if (order.compare(ranking, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranking);
+            }
+        }
+
+        void merge(TopK other) {
+            for (CityRanking ranking : other.heap) {
+                offer(ranking);
+            }
+        }
+
+        /**
+         * Retrieves the rankings kept
+         * @return the rankings, best first
+         */
+        List<CityRanking> sorted() {
+            ArrayList<CityRanking> sorted = new ArrayList<>(heap);
+            sorted.sort(order);
+            return List.copyOf(sorted);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * One city's place in a ranking made by GlobalWeatherManager.getTopCities.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ * @param region        region of the city
+ * @param country       country of the city
+ * @param state         state of the city, may be blank
+ * @param city          name of the city
+ * @param startingIndex index of the city's first reading
+ * @param value         the measure the city was ranked by
+ * @param count         number of temperatures behind the value
+ */
+public record CityRanking(String region, String country, String state, String city,
+                          int startingIndex, double value, int count) {
+}
@@ -0,0 +1,225 @@
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Spliterators over a range of whole city blocks of one dataset version.
+ * Splitting only ever happens between blocks, at the block boundary nearest the
+ * middle of the remaining readings, so a parallel task sees every reading of each
+ * city it touches and per-city reductions never have to be joined across tasks.
+ * Sizes are exact before and after splitting, and the dataset never changes, so the
+ * spliterators are SIZED, SUBSIZED and IMMUTABLE as well as ORDERED.
+ * <p>
+ * Readings builds a WeatherReading per row; Years and ValidTemperatures read the
+ * columns straight into primitive streams without boxing.  ValidTemperatures leaves
+ * out -99.0 and so is the only one that isn't sized.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+abstract class CitySpliterator {
+
+    static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED
+            | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+    final WeatherDataset dataset;
+    int block;
+    int row;
+
+    /**
+     * Block after the last block of the range
+     */
+    final int endBlock;
+
+    /**
+     * Creates a spliterator over a range of blocks
+     * @param dataset   the dataset
+     * @param block     first block of the range
+     * @param row       first row of the first block
+     * @param endBlock  block after the last block of the range
+     */
+    CitySpliterator(WeatherDataset dataset, int block, int row, int endBlock) {
+        this.dataset = dataset;
+        this.block = block;
+        this.row = row;
+        this.endBlock = endBlock;
+    }
+
+    public long estimateSize() {
+        return dataset.blockStart(endBlock) - dataset.blockStart(block) - row;
+    }
+
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * Finds where to split the remaining blocks
+     * @return the first block of the second half, or -1 if fewer than two blocks remain
+     */
+    int splitBlock() {
+        skipFinishedBlocks();
+        if (endBlock - block < 2) {
+            return -1;
+        }
+        int middle = (int) (dataset.blockStart(block) + row + estimateSize() / 2);
+        return Math.min(Math.max(dataset.blockOf(middle), block + 1), endBlock - 1);
+    }
+
+    /**
+     * Moves past blocks whose rows have all been read
+     * @return true if a row remains
+     */
+    boolean skipFinishedBlocks() {
+        while (block < endBlock && row == dataset.block(block).size) {
+            block++;
+            row = 0;
+        }
+        return block < endBlock;
+    }
+
+    /**
+     * Spliterator of every reading
+     */
+    static final class Readings extends CitySpliterator implements Spliterator<WeatherReading> {
+
+        Readings(WeatherDataset dataset, int block, int row, int endBlock) {
+            super(dataset, block, row, endBlock);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super WeatherReading> action) {
+            Objects.requireNonNull(action);
+            if (!skipFinishedBlocks()) {
+                return false;
+            }
+            action.accept(dataset.block(block).reading(row++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super WeatherReading> action) {
+            Objects.requireNonNull(action);
+            for (; block < endBlock; block++, row = 0) {
+                CityBlock current = dataset.block(block);
+                while (row < current.size) {
+                    action.accept(current.reading(row++));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<WeatherReading> trySplit() {
+            int split = splitBlock();
+            if (split < 0) {
+                return null;
+            }
+            Readings first = new Readings(dataset, block, row, split);
+            block = split;
+            row = 0;
+            return first;
+        }
+    }
+
+    /**
+     * Spliterator of the year of every reading
+     */
+    static final class Years extends CitySpliterator implements Spliterator.OfInt {
+
+        Years(WeatherDataset dataset, int block, int row, int endBlock) {
+            super(dataset, block, row, endBlock);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            if (!skipFinishedBlocks()) {
+                return false;
+            }
+            action.accept(dataset.block(block).years[row++]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            for (; block < endBlock; block++, row = 0) {
+                CityBlock current = dataset.block(block);
+                int[] years = current.years;
+                for (int end = current.size; row < end; row++) {
+                    action.accept(years[row]);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int split = splitBlock();
+            if (split < 0) {
+                return null;
+            }
+            Years first = new Years(dataset, block, row, split);
+            block = split;
+            row = 0;
+            return first;
+        }
+    }
+
+    /**
+     * Spliterator of the temperatures that aren't -99.0.  Each block's missing data
+     * index gives the runs of rows with temperatures, so missing rows are stepped
+     * over a run at a time.  Not SIZED, since the size is only known after reading.
+     */
+    static final class ValidTemperatures extends CitySpliterator implements Spliterator.OfDouble {
+
+        ValidTemperatures(WeatherDataset dataset, int block, int row, int endBlock) {
+            super(dataset, block, row, endBlock);
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            while (skipFinishedBlocks()) {
+                double temp = dataset.block(block).avgTemps[row++];
+                if (temp != TemperatureKernels.MISSING) {
+                    action.accept(temp);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            for (; block < endBlock; block++, row = 0) {
+                CityBlock current = dataset.block(block);
+                double[] temps = current.avgTemps;
+                current.missingData().validRows.forEachRun(row, current.size, (start, end) -> {
+                    for (int i = start; i < end; i++) {
+                        action.accept(temps[i]);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            int split = splitBlock();
+            if (split < 0) {
+                return null;
+            }
+            ValidTemperatures first = new ValidTemperatures(dataset, block, row, split);
+            block = split;
+            row = 0;
+            return first;
+        }
+    }
+}
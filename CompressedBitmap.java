@@ -0,0 +1,562 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable set of non-negative ints stored the way Roaring bitmaps store them.
+ * Values are split by their high 16 bits into containers, and each container holds
+ * the low 16 bits in whichever of three forms is smallest: a sorted array when
+ * there are few values, a run list of (start, length - 1) pairs when the values
+ * come in long runs, or a 65536-bit bitmap otherwise.  Queries work on runs of
+ * consecutive values, so a range with no holes costs one step however long it is.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class CompressedBitmap {
+
+    private static final int CONTAINER_BITS = 16;
+    private static final int CONTAINER_SIZE = 1 << CONTAINER_BITS;
+    private static final int LOW_MASK = CONTAINER_SIZE - 1;
+
+    /**
+     * Most values an array container holds before a bitmap is smaller
+     */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * Tags of the container forms in a snapshot
+     */
+    private static final byte ARRAY = 0;
+    private static final byte RUNS = 1;
+    private static final byte BITMAP = 2;
+
+    /**
+     * High 16 bits of the values in each container, ascending
+     */
+    private final char[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int total = 0;
+        for (Container container : containers) {
+            total += container.cardinality();
+        }
+        cardinality = total;
+    }
+
+    /**
+     * Counts the values in the set
+     * @return the number of values
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Counts the values in a range, reading whole containers inside the range by
+     * their stored count
+     * @param from  first value of the range
+     * @param to    value after the last value of the range
+     * @return the number of values from from up to but not including to
+     */
+    int cardinality(int from, int to) {
+        int count = 0;
+        for (int i = firstContainer(from); i < keys.length && base(i) < to; i++) {
+            int base = base(i);
+            if (from <= base && to - base >= CONTAINER_SIZE) {
+                count += containers[i].cardinality();
+            } else {
+                count += containers[i].cardinality(Math.max(from - base, 0),
+                        Math.min(to - base, CONTAINER_SIZE));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Visits each run of consecutive values in a range, in ascending order.  A run
+     * that crosses a container boundary is visited as two runs.
+     * @param from      first value of the range
+     * @param to        value after the last value of the range
+     * @param visitor   told the first value of each run and the value after its last
+     */
+    void forEachRun(int from, int to, RunVisitor visitor) {
+        for (int i = firstContainer(from); i < keys.length && base(i) < to; i++) {
+            int base = base(i);
+            containers[i].forEachRun(base, Math.max(from - base, 0),
+                    Math.min(to - base, CONTAINER_SIZE), visitor);
+        }
+    }
+
+    /**
+     * Checks if a value is in the set
+     * @param value     the value
+     * @return true if it is
+     */
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, (char) (value >>> CONTAINER_BITS));
+        return i >= 0 && containers[i].cardinality(value & LOW_MASK, (value & LOW_MASK) + 1) == 1;
+    }
+
+    /**
+     * Estimates the heap held by the set
+     * @return estimated size in bytes
+     */
+    long estimateHeapBytes() {
+        long bytes = 16 + 8 + align(16 + 2L * keys.length) + align(16 + 4L * containers.length);
+        for (Container container : containers) {
+            bytes += container.estimateHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the set for a snapshot, each container in the form it has now
+     * @param out   the snapshot stream
+     * @throws IOException if it can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeChar(keys[i]);
+            containers[i].write(out);
+        }
+    }
+
+    /**
+     * Reads a set written by write
+     * @param in    the snapshot, positioned at the set
+     * @return the set
+     * @throws IllegalArgumentException if a container has an unknown form
+     */
+    static CompressedBitmap read(ByteBuffer in) {
+        int count = in.getInt();
+        char[] keys = new char[count];
+        Container[] containers = new Container[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = in.getChar();
+            byte form = in.get();
+            containers[i] = switch (form) {
+                case ARRAY -> new ArrayContainer(readChars(in, in.getInt()));
+                case RUNS -> new RunContainer(readChars(in, in.getInt()));
+                case BITMAP -> new BitmapContainer(readLongs(in, CONTAINER_SIZE / Long.SIZE));
+                default -> throw new IllegalArgumentException("Unknown container form " + form);
+            };
+        }
+        return new CompressedBitmap(keys, containers);
+    }
+
+    private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+        out.writeInt(values.length);
+        for (char value : values) {
+            out.writeChar(value);
+        }
+    }
+
+    private static char[] readChars(ByteBuffer in, int length) {
+        char[] values = new char[length];
+        in.asCharBuffer().get(values);
+        in.position(in.position() + Character.BYTES * length);
+        return values;
+    }
+
+    private static long[] readLongs(ByteBuffer in, int length) {
+        long[] values = new long[length];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + Long.BYTES * length);
+        return values;
+    }
+
+    private int firstContainer(int from) {
+        int i = Arrays.binarySearch(keys, (char) (Math.max(from, 0) >>> CONTAINER_BITS));
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private int base(int container) {
+        return keys[container] << CONTAINER_BITS;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Told about each run of consecutive values
+     */
+    @FunctionalInterface
+    interface RunVisitor {
+        /**
+         * @param start     first value of the run
+         * @param end       value after the last value of the run
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * Builds a bitmap from values added in ascending order
+     */
+    static final class Builder {
+
+        private char[] keys = new char[4];
+        private Container[] containers = new Container[4];
+        private int containerCount;
+        private char[] values = new char[256];
+        private int valueCount;
+        private int key = -1;
+
+        /**
+         * Adds a value, ignoring it if it equals the last one added
+         * @param value     the value; must not be negative or less than the last value added
+         * @throws IllegalArgumentException if value is negative or out of order
+         */
+        void add(int value) {
+            int high = value >>> CONTAINER_BITS;
+            char low = (char) (value & LOW_MASK);
+            if (value < 0 || high < key
+                    || high == key && valueCount > 0 && low < values[valueCount - 1]) {
+                throw new IllegalArgumentException("Values must be added in ascending order.");
+            }
+            if (high != key) {
+                flush();
+                key = high;
+            } else if (valueCount > 0 && values[valueCount - 1] == low) {
+                return;
+            }
+            if (valueCount == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, CONTAINER_SIZE));
+            }
+            values[valueCount++] = low;
+        }
+
+        /**
+         * Creates the bitmap of the values added so far
+         * @return the bitmap
+         */
+        CompressedBitmap build() {
+            flush();
+            return new CompressedBitmap(Arrays.copyOf(keys, containerCount),
+                    Arrays.copyOf(containers, containerCount));
+        }
+
+        /**
+         * Stores the current container in its smallest form
+         */
+        private void flush() {
+            if (valueCount == 0) {
+                return;
+            }
+            int runs = 1;
+            for (int i = 1; i < valueCount; i++) {
+                if (values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            Container container;
+            long arrayBytes = 2L * valueCount;
+            long runBytes = 4L * runs;
+            if (runBytes < Math.min(arrayBytes, CONTAINER_SIZE / 8)) {
+                container = new RunContainer(values, valueCount, runs);
+            } else if (valueCount <= ARRAY_LIMIT) {
+                container = new ArrayContainer(Arrays.copyOf(values, valueCount));
+            } else {
+                container = new BitmapContainer(values, valueCount);
+            }
+            if (containerCount == keys.length) {
+                keys = Arrays.copyOf(keys, containerCount * 2);
+                containers = Arrays.copyOf(containers, containerCount * 2);
+            }
+            keys[containerCount] = (char) key;
+            containers[containerCount++] = container;
+            valueCount = 0;
+        }
+    }
+
+    /**
+     * The low 16 bits of the values sharing one key
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        /**
+         * Counts the values in a range of low bits
+         * @param from  first low value
+         * @param to    low value after the last, at most 65536
+         * @return the count
+         */
+        abstract int cardinality(int from, int to);
+
+        /**
+         * Visits the runs in a range of low bits
+         * @param base      value of low bits 0, added to every run
+         * @param from      first low value
+         * @param to        low value after the last, at most 65536
+         * @param visitor   told about each run
+         */
+        abstract void forEachRun(int base, int from, int to, RunVisitor visitor);
+
+        abstract long estimateHeapBytes();
+
+        /**
+         * Writes the container's form tag and contents
+         * @param out   the snapshot stream
+         * @throws IOException if it can't be written
+         */
+        abstract void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Sorted low values, for containers with few values
+     */
+    private static final class ArrayContainer extends Container {
+
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        int cardinality(int from, int to) {
+            return lowerBound(to) - lowerBound(from);
+        }
+
+        @Override
+        void forEachRun(int base, int from, int to, RunVisitor visitor) {
+            int i = lowerBound(from);
+            while (i < values.length && values[i] < to) {
+                int start = values[i];
+                int end = start + 1;
+                for (i++; i < values.length && values[i] == end && end < to; i++) {
+                    end++;
+                }
+                visitor.run(base + start, base + end);
+            }
+        }
+
+        @Override
+        long estimateHeapBytes() {
+            return 16 + align(16 + 2L * values.length);
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(ARRAY);
+            writeChars(out, values);
+        }
+
+        private int lowerBound(int value) {
+            if (value > LOW_MASK) {
+                return values.length;
+            }
+            int i = Arrays.binarySearch(values, (char) value);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /**
+     * Runs of consecutive low values, for containers where values come in long runs
+     */
+    private static final class RunContainer extends Container {
+
+        /**
+         * Start and length - 1 of each run, in pairs
+         */
+        private final char[] runs;
+        private final int cardinality;
+
+        RunContainer(char[] values, int count, int runCount) {
+            runs = new char[2 * runCount];
+            int run = 0;
+            int start = 0;
+            for (int i = 1; i <= count; i++) {
+                if (i == count || values[i] != values[i - 1] + 1) {
+                    runs[run++] = values[start];
+                    runs[run++] = (char) (i - start - 1);
+                    start = i;
+                }
+            }
+            cardinality = count;
+        }
+
+        /**
+         * Creates a container over stored runs
+         * @param runs  start and length - 1 of each run, in pairs
+         */
+        RunContainer(char[] runs) {
+            this.runs = runs;
+            int count = 0;
+            for (int i = 1; i < runs.length; i += 2) {
+                count += runs[i] + 1;
+            }
+            cardinality = count;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int cardinality(int from, int to) {
+            int[] count = new int[1];
+            forEachRun(0, from, to, (start, end) -> count[0] += end - start);
+            return count[0];
+        }
+
+        @Override
+        void forEachRun(int base, int from, int to, RunVisitor visitor) {
+            for (int i = firstRunEndingAfter(from); i < runs.length && runs[i] < to; i += 2) {
+                int start = Math.max(runs[i], from);
+                int end = Math.min(runs[i] + runs[i + 1] + 1, to);
+                visitor.run(base + start, base + end);
+            }
+        }
+
+        @Override
+        long estimateHeapBytes() {
+            return 16 + 8 + align(16 + 2L * runs.length);
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(RUNS);
+            writeChars(out, runs);
+        }
+
+        /**
+         * Finds the first run with a value at or after from
+         * @return index of the run's start in runs
+         */
+        private int firstRunEndingAfter(int from) {
+            int low = 0;
+            int high = runs.length / 2;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (runs[2 * mid] + runs[2 * mid + 1] < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return 2 * low;
+        }
+    }
+
+    /**
+     * One bit per low value, for dense containers without long runs
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(char[] values, int count) {
+            words = new long[CONTAINER_SIZE / Long.SIZE];
+            for (int i = 0; i < count; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            cardinality = count;
+        }
+
+        /**
+         * Creates a container over stored bits
+         * @param words     one bit per low value
+         */
+        BitmapContainer(long[] words) {
+            this.words = words;
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            cardinality = count;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int cardinality(int from, int to) {
+            if (from >= to) {
+                return 0;
+            }
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> -to;
+            if (first == last) {
+                return Long.bitCount(words[first] & firstMask & lastMask);
+            }
+            int count = Long.bitCount(words[first] & firstMask);
+            for (int i = first + 1; i < last; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            return count + Long.bitCount(words[last] & lastMask);
+        }
+
+        @Override
+        void forEachRun(int base, int from, int to, RunVisitor visitor) {
+            int start = nextSetBit(from, to);
+            while (start < to) {
+                int end = nextClearBit(start + 1, to);
+                visitor.run(base + start, base + end);
+                start = nextSetBit(end + 1, to);
+            }
+        }
+
+        @Override
+        long estimateHeapBytes() {
+            return 16 + 8 + align(16 + 8L * words.length);
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(BITMAP);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        private int nextSetBit(int from, int to) {
+            if (from >= to) {
+                return to;
+            }
+            int i = from >>> 6;
+            long word = words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == words.length) {
+                    return to;
+                }
+                word = words[i];
+            }
+            return Math.min(i * 64 + Long.numberOfTrailingZeros(word), to);
+        }
+
+        private int nextClearBit(int from, int to) {
+            if (from >= to) {
+                return to;
+            }
+            int i = from >>> 6;
+            long word = ~words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == words.length) {
+                    return to;
+                }
+                word = ~words[i];
+            }
+            return Math.min(i * 64 + Long.numberOfTrailingZeros(word), to);
+        }
+    }
+}
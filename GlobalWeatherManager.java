@@ -1,11 +1,29 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *Looks at weather data and provides many operations and methods for use
  * Implements GlobalWeatherManagerInterface for methods and Iterable for iteration
  * Reads from a file and gives info based off that
+ * <p>
+ * Thread safety: every method may be called from any number of threads at once,
+ * and reads never take a lock.  The readings are grouped by city and put in date
+ * order once, while the manager is constructed, and are never changed or re-sorted
+ * afterwards.  The data lives in an immutable dataset held in a volatile field:
+ * addReadings builds a new dataset, sharing what it can with the old one, and
+ * publishes it with a single volatile write, so everything it wrote happens-before
+ * any read that sees the new dataset.  Each call reads the field once and works on
+ * that one version throughout, and iterators keep the version they started with,
+ * so they never throw ConcurrentModificationException.
  *
  * @author Vivek Vemulakonda
  * @version 1.0
@@ -14,48 +32,162 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
         Iterable<WeatherReading> {
 
     /**
-     * ArrayList to store WeatherReadings for use
+     * Most rankings remembered by getTopCities
      */
-    private final ArrayList<WeatherReading> weatherArray;
+    private static final int RANKING_CACHE_SIZE = 64;
 
+    /**
+     * Columnar storage holding every reading, grouped by location.
+     * Replaced, never changed, when readings are added.
+     */
+    private volatile WeatherDataset dataset;
+
+    /**
+     * How long loading the readings took
+     */
+    private final LoadReport loadReport;
 
     /**
-     * Constructs a GlobalWeatherManager by reading given file
+     * The csv the readings came from, as it was when loaded
+     */
+    private final WeatherSnapshot.Source source;
+
+    /**
+     * Cache in front of the day-filtered queries, or null for none
+     */
+    private volatile ResultCache<Object, Object> resultCache;
+
+    /**
+     * Rankings already made, keyed by the dataset version they came from
+     */
+    private final ResultCache<Object, Object> rankings = ResultCache.lru(RANKING_CACHE_SIZE);
+
+    /**
+     * Told about every query call and how long it took, or null for none
+     */
+    private volatile MetricsListener metrics;
+
+
+    /**
+     * Constructs a GlobalWeatherManager by reading given file.
+     * The file is memory mapped and parsed in parallel chunks.  Readings are indexed
+     * by location, in the order each location first appears in the file, and by
+     * date within a location, so a file grouped by city and in date order keeps its
+     * row order, while a file whose cities' rows are interleaved is regrouped and
+     * getReading(i) is then not the file's i-th row.  If given a directory, every .csv file
+     * in it is loaded as a shard, in name order, as by GlobalWeatherManager(List).
      * @param weatherInfo file Info
      * @throws FileNotFoundException is thrown if file is not valid or found
      */
     public GlobalWeatherManager(File weatherInfo) throws FileNotFoundException {
-        weatherArray = new ArrayList<>();
-        Scanner scanner = new Scanner(weatherInfo);
-        scanner.nextLine();
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            int starting = 0;
-            int ending = line.indexOf(",");
-
-            String[] info = new String[8];
-            int index = 0;
-            while (ending != -1) {
-                info[index++] = line.substring(starting, ending);
-                starting = ending + 1;
-                ending = line.indexOf(",", starting);
-            }
-            info[index] = line.substring(starting);
+        LoadTimer timer = new LoadTimer();
+        source = WeatherSnapshot.Source.of(weatherInfo);
+        dataset = weatherInfo.isDirectory()
+                ? WeatherCsvLoader.load(WeatherCsvLoader.shards(weatherInfo), timer)
+                : WeatherCsvLoader.load(weatherInfo, timer);
+        loadReport = timer.report(dataset.size());
+    }
 
-            String region = info[0];
-            String country = info[1];
-            String state = info[2];
-            String city = info[3];
-            int month = Integer.parseInt(info[4]);
-            int day = Integer.parseInt(info[5]);
-            int year = Integer.parseInt(info[6]);
-            double avgTemp = Double.parseDouble(info[7]);
+    /**
+     * Constructs a GlobalWeatherManager from data split across several csv files,
+     * such as one per region or per year, each with its own header line.  The files
+     * are parsed concurrently, one task per file, and merged so the readings get the
+     * indexes they would have if the files were joined in list order and loaded as
+     * one file: by location, in order of first appearance, then by date.  A reading
+     * equal by WeatherReading.equals to one from an earlier file is dropped, keeping
+     * the earlier file's; repeats within one file are kept, as in a single file.
+     * A snapshot saved from this manager
+     * records no csv, so if it is damaged, load needs the csv passed to rebuild it.
+     * @param shards    the csv files, in priority order
+     * @throws FileNotFoundException if any file is not valid or found
+     * @throws IllegalArgumentException if shards is null or empty
+     */
+    public GlobalWeatherManager(List<File> shards) throws FileNotFoundException {
+        LoadTimer timer = new LoadTimer();
+        source = WeatherSnapshot.Source.NONE;
+        dataset = WeatherCsvLoader.load(shards, timer);
+        loadReport = timer.report(dataset.size());
+    }
 
-            weatherArray.add(new WeatherReading(region, country, state, city, month, day, year,
-                    avgTemp));
-        }
+    /**
+     * Constructs a GlobalWeatherManager over readings that are already loaded
+     * @param dataset       the readings
+     * @param source        the csv the readings came from
+     * @param loadReport    how long loading took
+     */
+    private GlobalWeatherManager(WeatherDataset dataset, WeatherSnapshot.Source source,
+                                 LoadReport loadReport) {
+        this.dataset = dataset;
+        this.source = source;
+        this.loadReport = loadReport;
+    }
 
+    /**
+     * Opens a binary snapshot written by save, using the csv recorded in it
+     * to rebuild the snapshot if it is missing, damaged or older than the csv.
+     * @param snapshot  the snapshot file
+     * @return a manager serving the snapshot's readings
+     * @throws IOException if the snapshot can't be used and there is no csv to rebuild
+     * it from, as for a snapshot of readings loaded from a list of files
+     */
+    public static GlobalWeatherManager load(Path snapshot) throws IOException {
+        return load(snapshot, null);
+    }
 
+    /**
+     * Opens a binary snapshot written by save.  The snapshot is memory mapped and its
+     * columns and indexes are copied in directly, so nothing is parsed, sorted or
+     * indexed.  If the snapshot is missing, fails its checksum, or was made from a
+     * different version of the csv, the csv is loaded instead and a new snapshot is
+     * saved in its place.  The csv counts as changed only if its size or last
+     * modified time differ from the ones recorded; its contents are not read.
+     * @param snapshot  the snapshot file
+     * @param csv       the csv or directory of csv files the snapshot is for, or null
+     *                  to use the one recorded in the snapshot
+     * @return a manager serving the snapshot's readings
+     * @throws IOException if the snapshot can't be used and there is no csv to rebuild
+     * it from, as for a snapshot of readings loaded from a list of files
+     */
+    public static GlobalWeatherManager load(Path snapshot, File csv) throws IOException {
+        LoadTimer timer = new LoadTimer();
+        if (Files.exists(snapshot)) {
+            try {
+                WeatherSnapshot stored = WeatherSnapshot.open(snapshot);
+                if (csv == null) {
+                    csv = stored.source().file();
+                }
+                if (stored.isIntact()
+                        && (csv == null || !csv.exists() || stored.source().matches(csv))) {
+                    timer.read();
+                    WeatherDataset dataset = stored.dataset(timer);
+                    return new GlobalWeatherManager(dataset, stored.source(),
+                            timer.report(dataset.size()));
+                }
+                if (csv == null) {
+                    throw new IOException(snapshot + " is damaged and records no csv to rebuild it"
+                            + " from; pass the csv to load");
+                }
+            } catch (IOException e) {
+                if (csv == null) {
+                    throw e;
+                }
+            }
+        }
+        if (csv == null) {
+            throw new FileNotFoundException(snapshot + " (No such file)");
+        }
+        GlobalWeatherManager manager = new GlobalWeatherManager(csv);
+        manager.save(snapshot);
+        return manager;
+    }
+
+    /**
+     * Writes every reading to a binary snapshot that load can open without parsing
+     * @param snapshot  the snapshot file to write
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path snapshot) throws IOException {
+        WeatherSnapshot.write(dataset, source, snapshot);
     }
 
     /**
@@ -64,11 +196,88 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public int getReadingCount() {
-        return weatherArray.size();
+        return dataset.size();
+    }
+
+    /**
+     * Retrieves how long loading the readings took
+     * @return      the number of readings loaded and the time taken
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    /**
+     * Adds new readings, such as the latest day's, without reloading or re-sorting
+     * the existing ones.  Each reading joins the end of its city's readings, whatever
+     * region it gives, or starts
+     * a new city after all existing cities, and the city stats, calendar day index
+     * and warming slope sums are updated for the new readings only.  Readings of
+     * cities after the first changed city move to higher indexes.  Other threads keep
+     * reading the previous data until the update is published all at once.
+     * @param readings  readings to add; must not be null or contain null
+     * @throws IllegalArgumentException if readings is null or contains null
+     */
+    public synchronized void addReadings(Iterable<WeatherReading> readings) {
+        if (readings == null) {
+            throw new IllegalArgumentException("Readings can't be null.");
+        }
+        for (WeatherReading reading : readings) {
+            if (reading == null) {
+                throw new IllegalArgumentException("Readings can't contain null.");
+            }
+        }
+        dataset = dataset.withReadings(readings);
+        rankings.clear();
+        ResultCache<Object, Object> cache = resultCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Puts a cache in front of the day-filtered getReadings and the day-filtered
+     * regression slope, which are the queries that repeat for popular cities.
+     * Cached results are keyed by the version of the readings they came from, so
+     * results from before addReadings are never returned after it, and they are
+     * copied before being handed out, so callers can't change them.  getCityListStats
+     * does not need the cache: each city's stats are already kept after first use.
+     * The manager picks its own key and result types, so the cache can be of any
+     * type and should not be shared with other code; its stats stay readable.
+     * @param cache     the cache to use, such as ResultCache.lru or ResultCache.tinyLfu,
+     *                  or null to stop caching
+     */
+    public void setResultCache(ResultCache<?, ?> cache) {
+        @SuppressWarnings("unchecked")
+        ResultCache<Object, Object> owned = (ResultCache<Object, Object>) cache;
+        resultCache = owned;
+    }
+
+    /**
+     * Sets the listener that is told how long each query call takes, such as a
+     * WeatherMetrics.  The listener is told about the load straight away.  With no
+     * listener, the only cost to a query is reading one field.
+     * @param listener  the listener to use, or null to stop timing calls
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        metrics = listener;
+        if (listener != null) {
+            listener.loaded(loadReport);
+        }
+    }
+
+    /**
+     * Estimates the heap used to hold the readings
+     * @return      estimated size of the stored readings in bytes
+     */
+    public long getDatasetHeapBytes() {
+        return dataset.estimateHeapBytes();
     }
 
     /**
      * Retrieves the weather reading at the specified index.
+     * Indexes follow the order described at GlobalWeatherManager(File): grouped by
+     * location in order of first appearance, then by date.
      *
      * @param index     the index for the desired reading; must be a valid element index.
      * @return the reading at the specified index
@@ -76,10 +285,24 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public WeatherReading getReading(int index) {
-        if (index < 0 || index >= weatherArray.size()) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return reading(index);
+        }
+        long start = System.nanoTime();
+        try {
+            return reading(index);
+        } finally {
+            listener.called(QueryMethod.GET_READING, System.nanoTime() - start);
+        }
+    }
+
+    private WeatherReading reading(int index) {
+        WeatherDataset current = dataset;
+        if (index < 0 || index >= current.size()) {
             throw new IndexOutOfBoundsException("Index not in valid range");
         }
-        return weatherArray.get(index);
+        return current.reading(index);
     }
 
     /**
@@ -94,18 +317,64 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public WeatherReading[] getReadings(int index, int count) {
-        if (index < 0 || count < 1 || count + index > weatherArray.size()) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return readings(index, count);
+        }
+        long start = System.nanoTime();
+        try {
+            return readings(index, count);
+        } finally {
+            listener.called(QueryMethod.GET_READINGS, System.nanoTime() - start);
+        }
+    }
+
+    private WeatherReading[] readings(int index, int count) {
+        WeatherDataset current = dataset;
+        if (index < 0 || count < 1 || count + index > current.size()) {
             throw new IndexOutOfBoundsException("Index or count not in valid range");
         }
-        WeatherReading[] finalReadings = new WeatherReading[count];
-        for (int i = 0; i < count; i++) {
-            finalReadings[i] = weatherArray.get(index + i);
+        return current.readings(index, count).readingArray();
+    }
+
+    /**
+     * Retrieves a set of weather readings as a read-only view, without copying.
+     * Each WeatherReading is built when it is read, so paging through a large range
+     * allocates only the readings actually used.  The view is a snapshot: it keeps
+     * showing the same readings after more are added.  It can be indexed, iterated
+     * and split for parallel streams.
+     *
+     * @param index     the index of the first reading; must be a valid index.
+     * @param count     the count of readings to include.  Must be at least 1.
+     *                  Must imply a valid range;
+     *                  index + count must be less than the total reading count.
+     * @return a read-only list of the readings, in index order.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     */
+    public List<WeatherReading> getReadingsView(int index, int count) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return readingsView(index, count);
+        }
+        long start = System.nanoTime();
+        try {
+            return readingsView(index, count);
+        } finally {
+            listener.called(QueryMethod.GET_READINGS, System.nanoTime() - start);
         }
-        return finalReadings;
+    }
+
+    private List<WeatherReading> readingsView(int index, int count) {
+        WeatherDataset current = dataset;
+        if (index < 0 || count < 1 || count + index > current.size()) {
+            throw new IndexOutOfBoundsException("Index or count not in valid range");
+        }
+        return current.readings(index, count);
     }
 
     /**
      *Retrieves a set of WeatherReadings
+     * Uses the calendar day index, so only readings for the month and day are visited.
      *
      * @param index     the index of the first reading.
      * @param count     the count of readings to check for potential inclusion.
@@ -122,7 +391,111 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public WeatherReading[] getReadings(int index, int count, int month, int day) {
-        if (index < 0 || count < 1 || index + count > weatherArray.size()) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return readingsForDay(index, count, month, day);
+        }
+        long start = System.nanoTime();
+        try {
+            return readingsForDay(index, count, month, day);
+        } finally {
+            listener.called(QueryMethod.GET_READINGS_FOR_DAY, System.nanoTime() - start);
+        }
+    }
+
+    private WeatherReading[] readingsForDay(int index, int count, int month, int day) {
+        WeatherDataset current = dataset;
+        checkDayQuery(current, index, count, month, day);
+        ResultCache<Object, Object> cache = resultCache;
+        if (cache == null) {
+            return current.readings(index, count, month, day).readingArray();
+        }
+        WeatherReading[] found = (WeatherReading[]) cache.get(
+                new DayReadingsKey(current.version, index, count, month, day),
+                key -> current.readings(index, count, month, day).readingArray());
+        return found.clone();
+    }
+
+    /**
+     * Retrieves the readings for one month and day inside a range as a read-only
+     * view.  Matching rows are read through the calendar day index, so nothing is
+     * copied and only matching readings are built, when they are read.  The result
+     * cache is not used.
+     *
+     * @param index     the index of the first reading.
+     * @param count     the count of readings to check for potential inclusion.
+     *                  Must be at least 1.
+     *                  Must imply a valid range; index +
+     *                  count must be less than the total reading count.
+     * @param month     the month to filter; must be a valid month (1 to 12).
+     * @param day       the day to filter; must be a valid day (1 to 31).
+     * @return a read-only list of the matching readings, in index order.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     * @throws IllegalArgumentException if month or day is not valid
+     */
+    public List<WeatherReading> getReadingsView(int index, int count, int month, int day) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return readingsForDayView(index, count, month, day);
+        }
+        long start = System.nanoTime();
+        try {
+            return readingsForDayView(index, count, month, day);
+        } finally {
+            listener.called(QueryMethod.GET_READINGS_FOR_DAY, System.nanoTime() - start);
+        }
+    }
+
+    private List<WeatherReading> readingsForDayView(int index, int count, int month, int day) {
+        WeatherDataset current = dataset;
+        checkDayQuery(current, index, count, month, day);
+        return current.readings(index, count, month, day);
+    }
+
+    /**
+     * Calculates the warming slope of the readings for one month and day, the same as
+     * getTemperatureLinearRegressionSlope(getReadings(index, count, month, day)), but
+     * answered from the result cache when one is set.
+     *
+     * @param index     the index of the first reading.
+     * @param count     the count of readings to check for potential inclusion.
+     *                  Must be at least 1.
+     *                  Must imply a valid range; index +
+     *                  count must be less than the total reading count.
+     * @param month     the month to filter; must be a valid month (1 to 12).
+     * @param day       the day to filter; must be a valid day (1 to 31).
+     * @return  slope of best-fit line; positive slope indicates increasing temperatures.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     * @throws IllegalArgumentException if month or day is not valid, or if fewer
+     * than two of the readings have temperatures
+     */
+    public double getTemperatureLinearRegressionSlope(int index, int count, int month, int day) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return slopeForDay(index, count, month, day);
+        }
+        long start = System.nanoTime();
+        try {
+            return slopeForDay(index, count, month, day);
+        } finally {
+            listener.called(QueryMethod.GET_REGRESSION_SLOPE, System.nanoTime() - start);
+        }
+    }
+
+    private double slopeForDay(int index, int count, int month, int day) {
+        WeatherDataset current = dataset;
+        checkDayQuery(current, index, count, month, day);
+        ResultCache<Object, Object> cache = resultCache;
+        if (cache == null) {
+            return slope(current.readings(index, count, month, day).readingArray());
+        }
+        return (Double) cache.get(new DaySlopeKey(current.version, index, count, month, day),
+                key -> slope(current.readings(index, count, month, day).readingArray()));
+    }
+
+    private static void checkDayQuery(WeatherDataset current, int index, int count,
+                                      int month, int day) {
+        if (index < 0 || count < 1 || index + count > current.size()) {
             throw new IndexOutOfBoundsException("Index or count not in valid range");
         }
         if (month < 1 || month > 12) {
@@ -131,29 +504,74 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
         if (day < 1 || day > 31) {
             throw new IllegalArgumentException("Day is not valid");
         }
+    }
 
-        int validDataCount = 0;
-        for (int i = index; i < index + count; i++) {
-            WeatherReading weatherReading = weatherArray.get(i);
-            if (weatherReading.month() == month && weatherReading.day() == day) {
-                validDataCount++;
-            }
+    /**
+     * Cache key of a day-filtered getReadings
+     */
+    private record DayReadingsKey(long version, int index, int count, int month, int day) {
+    }
+
+    /**
+     * Cache key of a day-filtered regression slope
+     */
+    private record DaySlopeKey(long version, int index, int count, int month, int day) {
+    }
+
+    /**
+     * Retrieves the readings for a location between two dates, with null location
+     * parameters matching every value.  Cities are found by binary search in country,
+     * state and city order and each city's dates by binary search on packed date keys,
+     * and the result is a read-only view over those rows, so nothing is copied.
+     *
+     * @param region    the region to match, or null for any.
+     * @param country   the country to match, or null for any.
+     * @param state     the state to match, or null for any.
+     * @param city      the city to match, or null for any.
+     * @param from      the first date to include, or null for no lower limit.
+     * @param to        the last date to include, or null for no upper limit.
+     * @return a read-only view of the matching readings in WeatherReading.compareTo order
+     * @throws IllegalArgumentException if to is before from
+     */
+    @Override
+    public List<WeatherReading> getReadings(String region, String country, String state,
+                                            String city, LocalDate from, LocalDate to) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return readingsBetween(region, country, state, city, from, to);
+        }
+        long start = System.nanoTime();
+        try {
+            return readingsBetween(region, country, state, city, from, to);
+        } finally {
+            listener.called(QueryMethod.GET_READINGS_BETWEEN, System.nanoTime() - start);
         }
+    }
 
-        WeatherReading[] finalData = new WeatherReading[validDataCount];
-        int currentIndex = 0;
-        for (int i = index; i < index + count; i++) {
-            WeatherReading weatherReading = weatherArray.get(i);
-            if (weatherReading.month() == month && weatherReading.day() == day) {
-                finalData[currentIndex++] = weatherReading;
-            }
+    private List<WeatherReading> readingsBetween(String region, String country, String state,
+                                                 String city, LocalDate from, LocalDate to) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("To date can't be before from date.");
         }
+        int fromKey = from == null ? Integer.MIN_VALUE : dateKey(from);
+        int toKey = to == null ? Integer.MAX_VALUE : dateKey(to);
+        return dataset.readings(region, country, state, city, fromKey, toKey);
+    }
 
-        return finalData;
+    /**
+     * Packs a date the same way the readings' dates are packed
+     * @param date  the date
+     * @return year * 10000 + month * 100 + day
+     */
+    static int dateKey(LocalDate date) {
+        int year = Math.max(-100_000, Math.min(100_000, date.getYear()));
+        return year * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
     }
 
     /**
      *Retrieves key list statistics for the specified country/state/city.
+     * Stats come from an index built at load time, so this is a constant time
+     * lookup that never searches or reorders the readings.
      *
      * @param country   the country of interest; must not be null or blank.
      * @param state     the state of interest; must not be null.
@@ -164,6 +582,19 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public CityListStats getCityListStats(String country, String state, String city) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return cityListStats(country, state, city);
+        }
+        long start = System.nanoTime();
+        try {
+            return cityListStats(country, state, city);
+        } finally {
+            listener.called(QueryMethod.GET_CITY_LIST_STATS, System.nanoTime() - start);
+        }
+    }
+
+    private CityListStats cityListStats(String country, String state, String city) {
         if (country==(null) || country.isEmpty()) {
             throw new IllegalArgumentException("Country can't be null or blank.");
         }
@@ -173,42 +604,143 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
         if (city == null || city.isEmpty()) {
             throw new IllegalArgumentException("City can't be null or blank.");
         }
-        WeatherReading target = new WeatherReading(null, country, state, city,
-                0, 0, 0, 0.0);
-        int index = Collections.binarySearch(weatherArray, target,WeatherReading::compareCountryStateCity);
+        return dataset.cityStats(country, state, city);
+    }
 
-        if (index < 0) {
-            Collections.sort(weatherArray);
-            index = Collections.binarySearch(weatherArray, target, WeatherReading::compareCountryStateCity);
-            if (index < 0) {
-                return null;
-            }
+    /**
+     * Retrieves the temperature count, total, lowest and highest for a city in one
+     * month or one whole year, ignoring -99.0.  Served from rollups built at load
+     * time and kept current by addReadings, so it takes constant time.
+     *
+     * @param country   the country of interest; must not be null or blank.
+     * @param state     the state of interest; must not be null.
+     * @param city      the city of interest; must not be null or blank.
+     * @param year      the year of interest.
+     * @param month     the month of interest (1 to 12), or 0 for the whole year.
+     * @return the summary, or null if the city is not found.
+     * Has a count of 0 if the city has no temperatures for that month or year.
+     * @throws IllegalArgumentException if Country or city is blank,
+     * if any of the three are null, or if month is not valid
+     */
+    public TemperatureSummary getCitySummary(String country, String state, String city,
+                                             int year, int month) {
+        if (country == null || country.isEmpty()) {
+            throw new IllegalArgumentException("Country can't be null or blank.");
         }
+        if (state == null) {
+            throw new IllegalArgumentException("State must not be null.");
+        }
+        if (city == null || city.isEmpty()) {
+            throw new IllegalArgumentException("City can't be null or blank.");
+        }
+        checkSummaryMonth(month);
+        TemperatureRollup rollup = dataset.cityRollup(country, state, city);
+        return rollup == null ? null : rollup.summary(year, month);
+    }
 
-        while (index > 0 && weatherArray.get(index - 1).compareCountryStateCity(target) == 0) {
-            index--;
+    /**
+     * Retrieves the temperature count, total, lowest and highest across every city
+     * in a country for one month or one whole year, ignoring -99.0.
+     *
+     * @param country   the country of interest; must not be null or blank.
+     * @param year      the year of interest.
+     * @param month     the month of interest (1 to 12), or 0 for the whole year.
+     * @return the summary, or null if the country is not found.
+     * @throws IllegalArgumentException if Country is null or blank, or if month is not valid
+     */
+    public TemperatureSummary getCountrySummary(String country, int year, int month) {
+        if (country == null || country.isEmpty()) {
+            throw new IllegalArgumentException("Country can't be null or blank.");
         }
+        checkSummaryMonth(month);
+        TemperatureRollup rollup = dataset.countryRollup(country);
+        return rollup == null ? null : rollup.summary(year, month);
+    }
 
-        ArrayList<Integer> yearSet = new ArrayList<>();
-        int count = 0;
-        int startingIndex = index;
+    /**
+     * Retrieves the temperature count, total, lowest and highest across every city
+     * in a region for one month or one whole year, ignoring -99.0.
+     *
+     * @param region    the region of interest; must not be null or blank.
+     * @param year      the year of interest.
+     * @param month     the month of interest (1 to 12), or 0 for the whole year.
+     * @return the summary, or null if the region is not found.
+     * @throws IllegalArgumentException if Region is null or blank, or if month is not valid
+     */
+    public TemperatureSummary getRegionSummary(String region, int year, int month) {
+        if (region == null || region.isEmpty()) {
+            throw new IllegalArgumentException("Region can't be null or blank.");
+        }
+        checkSummaryMonth(month);
+        TemperatureRollup rollup = dataset.regionRollup(region);
+        return rollup == null ? null : rollup.summary(year, month);
+    }
 
-        while (index < weatherArray.size() &&
-                weatherArray.get(index).compareCountryStateCity(target) == 0) {
-            WeatherReading reading = weatherArray.get(index);
-            yearSet.add(reading.year());
-            count++;
-            index++;
+    /**
+     * Measures how complete a city's temperature record is over a range of years:
+     * how many calendar days have a temperature other than -99.0, and the longest
+     * run of days without one between two days with one.  Days with no reading at
+     * all count as missing.  Answered from the city's missing data bitmaps, built at
+     * load time, reading one stored count per year and one step per run of days
+     * with temperatures, without scanning the readings.
+     *
+     * @param country   the country of interest; must not be null or blank.
+     * @param state     the state of interest; must not be null.
+     * @param city      the city of interest; must not be null or blank.
+     * @param fromYear  the first year; must be from 0 to 9999.
+     * @param toYear    the last year; must be from fromYear to 9999.
+     * @return the coverage, or null if the city is not found.
+     * @throws IllegalArgumentException if Country or city is blank,
+     * if any of the three are null, or if the years are not valid
+     */
+    public CityCoverage getCityCoverage(String country, String state, String city,
+                                        int fromYear, int toYear) {
+        if (country == null || country.isEmpty()) {
+            throw new IllegalArgumentException("Country can't be null or blank.");
+        }
+        if (state == null) {
+            throw new IllegalArgumentException("State must not be null.");
+        }
+        if (city == null || city.isEmpty()) {
+            throw new IllegalArgumentException("City can't be null or blank.");
+        }
+        checkCoverageYears(fromYear, toYear);
+        return dataset.cityCoverage(country, state, city, fromYear, toYear);
+    }
+
+    /**
+     * Finds the cities with a nearly complete record over a range of years, such as
+     * every city with a temperature on more than 95% of the days from 2000 to 2019.
+     * Each city is measured as by getCityCoverage, from its bitmaps.
+     *
+     * @param minCoverage   smallest share of days with a temperature; must be from 0.0 to 1.0.
+     * @param fromYear      the first year; must be from 0 to 9999.
+     * @param toYear        the last year; must be from fromYear to 9999.
+     * @return the matching cities in reading order; the list can't be changed
+     * @throws IllegalArgumentException if minCoverage or the years are not valid
+     */
+    public List<CityCoverage> getCitiesByCoverage(double minCoverage, int fromYear, int toYear) {
+        if (!(minCoverage >= 0.0 && minCoverage <= 1.0)) {
+            throw new IllegalArgumentException("Coverage must be from 0 to 1.");
         }
+        checkCoverageYears(fromYear, toYear);
+        return dataset.citiesByCoverage(minCoverage, fromYear, toYear);
+    }
 
-        int[] years = new int[yearSet.size()];
-        int i = 0;
-        for (Integer year : yearSet) {
-            years[i++] = year;
+    private static void checkCoverageYears(int fromYear, int toYear) {
+        if (fromYear < 0 || toYear > MissingDataIndex.MAX_YEAR) {
+            throw new IllegalArgumentException("Years must be from 0 to "
+                    + MissingDataIndex.MAX_YEAR + ".");
+        }
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("From year can't be after to year.");
         }
-        Arrays.sort(years);
+    }
 
-        return new CityListStats(startingIndex, count, years);
+    private static void checkSummaryMonth(int month) {
+        if (month < 0 || month > 12) {
+            throw new IllegalArgumentException("Month is not valid");
+        }
     }
 
     /**
@@ -217,12 +749,87 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public Iterator<WeatherReading> iterator() {
-        return weatherArray.iterator();
+        WeatherDataset current = dataset;
+        return new Iterator<>() {
+            private int blockIndex;
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                while (blockIndex < current.blockCount() && row == current.block(blockIndex).size) {
+                    blockIndex++;
+                    row = 0;
+                }
+                return blockIndex < current.blockCount();
+            }
+
+            @Override
+            public WeatherReading next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.block(blockIndex).reading(row++);
+            }
+        };
+    }
+
+    /**
+     * Retrieves a spliterator over all weather readings, for the version of the
+     * readings current when it is made.  It only splits between cities, so each
+     * part holds whole cities, and it is SIZED, SUBSIZED and IMMUTABLE.
+     * @return      spliterator of every reading in index order
+     */
+    @Override
+    public Spliterator<WeatherReading> spliterator() {
+        WeatherDataset current = dataset;
+        return new CitySpliterator.Readings(current, 0, 0, current.blockCount());
+    }
+
+    /**
+     * Retrieves a sequential stream of all weather readings
+     * @return      stream of every reading in index order
+     */
+    public Stream<WeatherReading> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Retrieves a parallel stream of all weather readings.  The readings are split
+     * between tasks only at city boundaries, so a task never sees part of a city.
+     * @return      parallel stream of every reading in index order
+     */
+    public Stream<WeatherReading> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Retrieves the year of every reading as a stream, without boxing.
+     * Call parallel() on it to process cities in parallel.
+     * @return      stream of years in index order
+     */
+    public IntStream yearStream() {
+        WeatherDataset current = dataset;
+        return StreamSupport.intStream(
+                new CitySpliterator.Years(current, 0, 0, current.blockCount()), false);
+    }
+
+    /**
+     * Retrieves the average temperature of every reading that has one as a stream,
+     * without boxing.  Temperatures of -99.0, meaning no data, are left out a run
+     * of rows at a time using each city's missing data index.  Call parallel() on it to process cities in parallel.
+     * @return      stream of temperatures in index order
+     */
+    public DoubleStream temperatureStream() {
+        WeatherDataset current = dataset;
+        return StreamSupport.doubleStream(
+                new CitySpliterator.ValidTemperatures(current, 0, 0, current.blockCount()), false);
     }
 
     /**
      *Does a linear regression analysis on the data, using x = year and y = temperature.
      *Calculates the slope of a best-fit line using the Least Squares method.
+     *Each reading is added straight to a running regression, so nothing is copied;
+     *the column kernels are only used by the overloads that take primitive arrays.
      *
      * @param readings      array of readings to analyze.
      *  Should typically be readings for a single day over
@@ -234,24 +841,115 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public double getTemperatureLinearRegressionSlope(WeatherReading[] readings) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return slope(readings);
+        }
+        long start = System.nanoTime();
+        try {
+            return slope(readings);
+        } finally {
+            listener.called(QueryMethod.GET_REGRESSION_SLOPE, System.nanoTime() - start);
+        }
+    }
+
+    static double slope(WeatherReading[] readings) {
         if (readings == null || readings.length < 2) {
             throw new IllegalArgumentException("Readings can't be null and must contain at " +
                     "least two readings.");
         }
-        ArrayList<Integer> xValuesList = new ArrayList<>();
-        ArrayList<Double> yValuesList = new ArrayList<>();
-
+        RegressionAccumulator accumulator = new RegressionAccumulator();
         for (WeatherReading reading : readings) {
-            if (reading.avgTemp() != -99.0) {
-                xValuesList.add(reading.year());
-                yValuesList.add(reading.avgTemp());
+            if (reading.avgTemp() != TemperatureKernels.MISSING) {
+                accumulator.add(reading.year(), reading.avgTemp());
             }
         }
+        if (accumulator.count() < 2) {
+            throw new IllegalArgumentException("x values can't be null and must contain " +
+                    "at least two elements.");
+        }
+        return accumulator.slope();
+    }
 
-        Integer[] xValues = xValuesList.toArray(new Integer[0]);
-        Double[] yValues = yValuesList.toArray(new Double[0]);
+    /**
+     * Calculates the warming slope for every city on every calendar day in one
+     * parallel pass, the same as calling getTemperatureLinearRegressionSlope on the
+     * readings for each city and day.  Temperatures of -99.0 are ignored.
+     * @return the slopes for every city and day
+     */
+    public WarmingTrends getWarmingTrends() {
+        return new WarmingTrends(dataset);
+    }
+
+    /**
+     * Finds heatwave and cold snap days: readings whose temperature is unusually far
+     * from the same city's temperatures on the same calendar day in the years just
+     * before.  Each city is scanned once in date order, keeping a rolling mean and
+     * variance for every calendar day over the window, and cities are scanned in
+     * parallel.  Temperatures of -99.0 are ignored, and a reading is only judged
+     * once its calendar day has at least three earlier readings in the window.
+     * @param windowYears   how many years before each reading make its baseline;
+     *                      must be at least 3
+     * @param threshold     smallest absolute z-score to report, such as 3.0; must be
+     *                      greater than 0
+     * @return the anomalies in index order, with their baseline and z-score
+     * @throws IllegalArgumentException if windowYears is less than 3 or threshold
+     * is not greater than 0
+     */
+    public List<TemperatureAnomaly> getAnomalies(int windowYears, double threshold) {
+        if (windowYears < AnomalyDetector.MIN_BASELINE) {
+            throw new IllegalArgumentException("Window must be at least "
+                    + AnomalyDetector.MIN_BASELINE + " years.");
+        }
+        if (!(threshold > 0.0)) {
+            throw new IllegalArgumentException("Threshold must be greater than 0.");
+        }
+        return AnomalyDetector.find(dataset, windowYears, threshold);
+    }
 
-        return calcLinearRegressionSlope(xValues, yValues);
+    /**
+     * Ranks cities by a measure, such as the 20 cities that warmed fastest since
+     * 1995 or the coldest cities of a country.  Every matching city is measured in
+     * one parallel pass that keeps only the best k in a bounded heap, so only those
+     * are sorted.  Temperatures of -99.0 are ignored, and cities with no
+     * temperatures in the years, or fewer than two years of them for a warming
+     * slope, are left out.  Results are remembered until readings are added, so
+     * asking again for the same ranking costs a lookup.
+     *
+     * @param measure   what to rank by; must not be null
+     * @param k         how many cities to return; must be at least 1
+     * @param region    the region to match, or null for any.
+     * @param country   the country to match, or null for any.
+     * @param fromYear  the first year to count.
+     * @param toYear    the last year to count; must not be before fromYear.
+     * @return up to k cities, best first, with ties in reading order; the list can't be changed
+     * @throws IllegalArgumentException if measure is null, k is less than 1, or
+     * fromYear is after toYear
+     */
+    public List<CityRanking> getTopCities(RankingMeasure measure, int k, String region,
+                                          String country, int fromYear, int toYear) {
+        if (measure == null) {
+            throw new IllegalArgumentException("Measure can't be null.");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be at least 1.");
+        }
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("From year can't be after to year.");
+        }
+        WeatherDataset current = dataset;
+        @SuppressWarnings("unchecked")
+        List<CityRanking> ranked = (List<CityRanking>) rankings.get(
+                new RankingKey(current.version, measure, k, region, country, fromYear, toYear),
+                key -> CityRanker.rank(current, measure, k, region, country, fromYear, toYear));
+        return ranked;
+    }
+
+    /**
+     * Cache key of a ranking
+     */
+    private record RankingKey(long version, RankingMeasure measure, int k, String region,
+                              String country, int fromYear, int toYear) {
     }
 
     /**
@@ -266,6 +964,46 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
      */
     @Override
     public double calcLinearRegressionSlope(Integer[] x, Double[] y) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return boxedSlope(x, y);
+        }
+        long start = System.nanoTime();
+        try {
+            return boxedSlope(x, y);
+        } finally {
+            listener.called(QueryMethod.CALC_REGRESSION_SLOPE, System.nanoTime() - start);
+        }
+    }
+
+    static double boxedSlope(Integer[] x, Double[] y) {
+        if (x == null || x.length < 2) {
+            throw new IllegalArgumentException("x values can't be null and must contain " +
+                    "at least two elements.");
+        }
+        if (y == null || y.length != x.length) {
+            throw new IllegalArgumentException("y values can't be null and must be the " +
+                    "same length as the x array.");
+        }
+        RegressionAccumulator accumulator = new RegressionAccumulator();
+        for (int i = 0; i < x.length; i++) {
+            accumulator.add(x[i], y[i]);
+        }
+        return accumulator.slope();
+    }
+
+    /**
+     * Calculates the slope of the best-fit line calculated using the Least Squares method,
+     * without boxing any values.
+     *
+     * @param x     an array of x values; must not be null and must contain at least two elements.
+     * @param y     an array of y values; must be the same length as the x array
+     *              and must not be null.
+     * @return the slope of the best-fit line
+     * @throws IllegalArgumentException if any values are null,
+     * if both arrays are different lengths, or if array length is less than 2
+     */
+    public double calcLinearRegressionSlope(int[] x, double[] y) {
         if (x == null || x.length < 2) {
             throw new IllegalArgumentException("x values can't be null and must contain " +
                     "at least two elements.");
@@ -274,19 +1012,45 @@ public class GlobalWeatherManager implements GlobalWeatherManagerInterface,
             throw new IllegalArgumentException("y values can't be null and must be the " +
                     "same length as the x array.");
         }
-        int length = x.length;
-        double sumX = 0.0;
-        double sumY = 0.0;
-        double sumX2 = 0.0;
-        double sumXY = 0.0;
+        return calcLinearRegressionSlope(x, y, 0, x.length);
+    }
 
-        for (int i = 0; i < length; i++) {
-            sumX += x[i];
-            sumY += y[i];
-            sumXY += (x[i] * y[i]);
-            sumX2 += (x[i] * x[i]);
+    /**
+     * Calculates the slope of the best-fit line for part of two arrays,
+     * without boxing any values.
+     *
+     * @param x         an array of x values; must not be null.
+     * @param y         an array of y values; must not be null.
+     * @param offset    index of the first value to use in both arrays.
+     * @param length    number of values to use; must be at least 2.
+     * @return the slope of the best-fit line
+     * @throws IllegalArgumentException if any values are null or length is less than 2
+     * @throws IndexOutOfBoundsException if offset and length don't fit in both arrays
+     */
+    public double calcLinearRegressionSlope(int[] x, double[] y, int offset, int length) {
+        MetricsListener listener = metrics;
+        if (listener == null) {
+            return slope(x, y, offset, length);
         }
+        long start = System.nanoTime();
+        try {
+            return slope(x, y, offset, length);
+        } finally {
+            listener.called(QueryMethod.CALC_REGRESSION_SLOPE, System.nanoTime() - start);
+        }
+    }
 
-        return (length * sumXY - sumX * sumY) / (length * sumX2 - sumX * sumX);
+    private double slope(int[] x, double[] y, int offset, int length) {
+        if (x == null || y == null) {
+            throw new IllegalArgumentException("x and y values can't be null.");
+        }
+        if (length < 2) {
+            throw new IllegalArgumentException("Must use at least two elements.");
+        }
+        Objects.checkFromIndexSize(offset, length, x.length);
+        Objects.checkFromIndexSize(offset, length, y.length);
+        RegressionAccumulator accumulator = new RegressionAccumulator();
+        TemperatureKernels.get().regression(x, y, offset, length, false, accumulator);
+        return accumulator.slope();
     }
 }
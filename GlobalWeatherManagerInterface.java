@@ -1,4 +1,6 @@
+import java.time.LocalDate;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Specifies the methods required for the GlobalWeatherManager class
@@ -42,6 +44,23 @@ public interface GlobalWeatherManagerInterface {
      */
     public WeatherReading[] getReadings(int index, int count, int month, int day);
 
+    /**
+     * Retrieves the readings for a location between two dates.
+     * Any of the location parameters may be null to match every value, so a
+     * country on its own selects every city in that country.
+     * @param region    the region to match, or null for any.
+     * @param country   the country to match, or null for any.
+     * @param state     the state to match, or null for any.  Blank matches cities without a state.
+     * @param city      the city to match, or null for any.
+     * @param from      the first date to include, or null for no lower limit.
+     * @param to        the last date to include, or null for no upper limit;
+     *                  must not be before from.
+     * @return          a read-only view of the matching readings, ordered by country, state, city
+     *                  and date like WeatherReading.compareTo.  The readings are not copied.
+     */
+    public List<WeatherReading> getReadings(String region, String country, String state, String city,
+                                            LocalDate from, LocalDate to);
+
     /**
      * Retrieves key list statistics for the specified country/state/city.
      * Student note:  okay to use an additional ArrayList in this method.
@@ -2,9 +2,33 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
 
 public class GlobalWeatherManagerTest {
 
@@ -54,13 +78,180 @@ public class GlobalWeatherManagerTest {
         assertThrows(IndexOutOfBoundsException.class, () -> manager.getReadings(-1, 1));
     }
 
+    @Test
+    public void testGetReadingsForDay() {
+        int index = 9000;
+        int count = 20000;
+        WeatherReading[] all = manager.getReadings(index, count);
+        WeatherReading[] filtered = manager.getReadings(index, count, 2, 29);
+        int matched = 0;
+        for (WeatherReading reading : all) {
+            if (reading.month() == 2 && reading.day() == 29) {
+                assertEquals(reading, filtered[matched++]);
+            }
+        }
+        assertEquals(matched, filtered.length);
+        assertTrue(matched > 0);
+    }
+
+    @Test
+    public void testStreams() {
+        int count = manager.getReadingCount();
+        assertEquals(count, manager.stream().count());
+        assertEquals(count, manager.parallelStream().count());
+        assertEquals(manager.stream().mapToLong(WeatherReading::year).sum(),
+                manager.yearStream().parallel().asLongStream().sum());
+        assertEquals(manager.stream().filter(reading -> reading.avgTemp() != -99.0).count(),
+                manager.temperatureStream().parallel().count());
+        assertTrue(manager.temperatureStream().allMatch(temp -> temp != -99.0));
+        assertEquals(manager.getCityListStats("Algeria", "", "Algiers").count(),
+                manager.parallelStream().filter(reading -> reading.city().equals("Algiers")).count());
+
+        Spliterator<WeatherReading> second = manager.spliterator();
+        assertTrue(second.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED
+                | Spliterator.IMMUTABLE));
+        Spliterator<WeatherReading> first = second.trySplit();
+        assertEquals(count, first.getExactSizeIfKnown() + second.getExactSizeIfKnown());
+        WeatherReading last = manager.getReading((int) first.getExactSizeIfKnown() - 1);
+        WeatherReading next = manager.getReading((int) first.getExactSizeIfKnown());
+        assertTrue(last.compareCountryStateCity(next) != 0);
+    }
+
+    @Test
+    public void testGetReadingsView() {
+        int index = 9000;
+        int count = 20000;
+        List<WeatherReading> view = manager.getReadingsView(index, count);
+        assertEquals(Arrays.asList(manager.getReadings(index, count)), view);
+        assertEquals(manager.getReading(index + 15000), view.get(15000));
+        assertEquals(view.subList(100, 200), Arrays.asList(manager.getReadings(index + 100, 100)));
+        assertEquals(count, view.parallelStream().filter(reading -> reading.year() > 0).count());
+        assertThrows(UnsupportedOperationException.class, () -> view.set(0, view.get(1)));
+
+        List<WeatherReading> leapDays = manager.getReadingsView(index, count, 2, 29);
+        assertEquals(Arrays.asList(manager.getReadings(index, count, 2, 29)), leapDays);
+        assertTrue(leapDays.stream().allMatch(reading -> reading.month() == 2 && reading.day() == 29));
+        assertThrows(IndexOutOfBoundsException.class, () -> leapDays.get(leapDays.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> manager.getReadingsView(-1, 5));
+        assertThrows(IllegalArgumentException.class, () -> manager.getReadingsView(0, 5, 13, 1));
+    }
+
+    @Test
+    public void testGetReadingsForDayInvalid() {
+        assertThrows(IndexOutOfBoundsException.class, () -> manager.getReadings(-1, 5, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> manager.getReadings(0, 5, 13, 1));
+        assertThrows(IllegalArgumentException.class, () -> manager.getReadings(0, 5, 1, 32));
+    }
+
+    @Test
+    public void testGetReadingsByLocationAndDate() {
+        LocalDate from = LocalDate.of(2000, 2, 15);
+        LocalDate to = LocalDate.of(2003, 6, 1);
+        List<WeatherReading> expected = new ArrayList<>();
+        for (WeatherReading reading : manager) {
+            int key = reading.year() * 10000 + reading.month() * 100 + reading.day();
+            if (reading.country().equals("US") && key >= 20000215 && key <= 20030601) {
+                expected.add(reading);
+            }
+        }
+        expected.sort(null);
+        List<WeatherReading> found = manager.getReadings(null, "US", null, null, from, to);
+        assertEquals(expected.size(), found.size());
+        assertTrue(found.size() > 0);
+        for (int i = 0; i < found.size(); i += 97) {
+            assertEquals(expected.get(i), found.get(i));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> found.remove(0));
+
+        List<WeatherReading> algiers = manager.getReadings("Africa", "Algeria", "", "Algiers",
+                null, null);
+        assertEquals(9265, algiers.size());
+        assertEquals(manager.getReading(0), algiers.get(0));
+        assertEquals(0, manager.getReadings("Europe", "Algeria", null, null, null, null).size());
+        assertThrows(IllegalArgumentException.class, () ->
+                manager.getReadings(null, "US", null, null, to, from));
+    }
+
+    @Test
+    public void testLocationStringsAreShared() {
+        List<WeatherReading> phoenix = manager.getReadings(null, "US", "Arizona", "Phoenix", null, null);
+        List<WeatherReading> tucson = manager.getReadings(null, "US", "Arizona", "Tucson", null, null);
+        assertSame(phoenix.get(0).country(), tucson.get(0).country());
+        assertSame(phoenix.get(0).state(), tucson.get(0).state());
+        assertSame(phoenix.get(0).region(), tucson.get(0).region());
+
+        WeatherReading copy = new WeatherReading(new String("North America"), new String("US"),
+                new String("Arizona"), new String("Tucson"), 1, 1, 1995, 50.0);
+        assertTrue(phoenix.get(0).compareCountryStateCity(copy) < 0);
+        assertEquals(0, tucson.get(0).compareCountryStateCity(copy));
+        assertEquals(0, manager.getReadings(null, "US", "Atlantis", null, null, null).size());
+        assertEquals(0, manager.getReadings(null, "Atlantis", null, null, null, null).size());
+    }
+
+    @Test
+    public void testSummaries() {
+        int count = 0;
+        double sum = 0.0;
+        double max = Double.NEGATIVE_INFINITY;
+        int yearCount = 0;
+        for (WeatherReading reading : manager.getReadings("Africa", "Algeria", "", "Algiers",
+                LocalDate.of(2001, 1, 1), LocalDate.of(2001, 12, 31))) {
+            if (reading.avgTemp() != -99.0) {
+                yearCount++;
+                if (reading.month() == 3) {
+                    count++;
+                    sum += reading.avgTemp();
+                    max = Math.max(max, reading.avgTemp());
+                }
+            }
+        }
+        TemperatureSummary march = manager.getCitySummary("Algeria", "", "Algiers", 2001, 3);
+        assertEquals(count, march.count());
+        assertEquals(sum / count, march.mean(), 1e-9);
+        assertEquals(max, march.max());
+        assertEquals(yearCount, manager.getCitySummary("Algeria", "", "Algiers", 2001, 0).count());
+        assertEquals(0, manager.getCitySummary("Algeria", "", "Algiers", 1900, 1).count());
+        assertEquals(0, manager.getCitySummary("Algeria", "", "Algiers", Integer.MAX_VALUE, 12).count());
+        assertEquals(0, manager.getCitySummary("Algeria", "", "Algiers", Integer.MIN_VALUE, 0).count());
+        assertEquals(0, manager.getCountrySummary("Algeria", Integer.MAX_VALUE - 1, 0).count());
+        assertNull(manager.getCitySummary("Algeria", "", "Atlantis", 2001, 3));
+
+        TemperatureSummary africa = manager.getRegionSummary("Africa", 2001, 3);
+        assertTrue(africa.count() >= march.count());
+        assertTrue(africa.max() >= march.max());
+        assertEquals(march.count(), manager.getCountrySummary("Algeria", 2001, 3).count());
+        assertThrows(IllegalArgumentException.class, () -> manager.getCountrySummary("US", 2001, 13));
+    }
+
     @Test
     public void testGetCityListStats() {
         CityListStats stats = manager.getCityListStats("Algeria", "", "Algiers");
         assertNotNull(stats);
         assertEquals(0, stats.startingIndex());
         assertEquals(9265, stats.count());
-        assertEquals(9265, stats.years().length);
+        assertEquals(9265, stats.yearCount());
+    }
+
+    @Test
+    public void testGetCityListStatsNotFound() {
+        assertNull(manager.getCityListStats("Algeria", "", "Atlantis"));
+        assertNull(manager.getCityListStats("Atlantis", "", "Algiers"));
+        assertEquals(0, manager.getCityListStats("Algeria", "", "Algiers").startingIndex());
+    }
+
+    @Test
+    public void testGetCityListStatsYearsAreCopied() {
+        CityListStats stats = manager.getCityListStats("Algeria", "", "Algiers");
+        int[] years = stats.years();
+        int first = years[0];
+        years[0] = -1;
+        CityListStats fresh = manager.getCityListStats("Algeria", "", "Algiers");
+        assertEquals(years.length, fresh.yearCount());
+        assertEquals(first, fresh.year(0));
+        for (int i = 1; i < fresh.yearCount(); i++) {
+            assertTrue(fresh.year(i - 1) <= fresh.year(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> fresh.year(fresh.yearCount()));
     }
 
     @Test
@@ -87,6 +278,287 @@ public class GlobalWeatherManagerTest {
         assertEquals(2.0, slope, 0.001);
     }
 
+    @Test
+    public void testCalcLinearRegressionSlopePrimitive() {
+        int[] years = {1999, 2000, 2001, 2002, 2003};
+        double[] temps = {50.0, 51.5, 53.0, 54.5, 56.0};
+        assertEquals(1.5, manager.calcLinearRegressionSlope(years, temps), 1e-12);
+        assertEquals(1.5, manager.calcLinearRegressionSlope(years, temps, 1, 3), 1e-12);
+        assertEquals(1.5, manager.calcLinearRegressionSlope(new Integer[]{1999, 2000, 2001},
+                new Double[]{50.0, 51.5, 53.0}), 1e-12);
+        assertThrows(IllegalArgumentException.class, () ->
+                manager.calcLinearRegressionSlope(years, new double[2]));
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                manager.calcLinearRegressionSlope(years, temps, 4, 2));
+    }
+
+    @Test
+    public void testGetWarmingTrends() {
+        WarmingTrends trends = manager.getWarmingTrends();
+        int algiers = trends.indexOf("Algeria", "", "Algiers");
+        assertEquals(0, algiers);
+        assertEquals("Africa", trends.getRegion(algiers));
+        CityListStats stats = manager.getCityListStats("Algeria", "", "Algiers");
+        WeatherReading[] readings = manager.getReadings(stats.startingIndex(), stats.count(), 7, 4);
+        assertEquals(manager.getTemperatureLinearRegressionSlope(readings),
+                trends.getSlope(algiers, 7, 4), 1e-9);
+        assertTrue(Double.isNaN(trends.getSlope(algiers, 2, 31)));
+        assertEquals(0, trends.getReadingCount(algiers, 2, 31));
+        assertThrows(IllegalArgumentException.class, () -> trends.getSlope(algiers, 13, 1));
+    }
+
+    @Test
+    public void testGetTopCities() {
+        WarmingTrends cities = manager.getWarmingTrends();
+        List<double[]> slopes = new ArrayList<>();
+        List<double[]> means = new ArrayList<>();
+        for (int c = 0; c < cities.getCityCount(); c++) {
+            List<WeatherReading> readings = manager.getReadings(null, cities.getCountry(c),
+                    cities.getState(c), cities.getCity(c), LocalDate.of(2000, 1, 1),
+                    LocalDate.of(2009, 12, 31));
+            List<WeatherReading> temps = readings.stream().filter(r -> r.avgTemp() != -99.0).toList();
+            if (temps.size() >= 2) {
+                slopes.add(new double[]{manager.getTemperatureLinearRegressionSlope(
+                        temps.toArray(new WeatherReading[0])), c});
+            }
+            if (cities.getRegion(c).equals("Europe") && !temps.isEmpty()) {
+                means.add(new double[]{temps.stream().mapToDouble(WeatherReading::avgTemp)
+                        .average().orElseThrow(), c});
+            }
+        }
+        slopes.sort((a, b) -> Double.compare(b[0], a[0]));
+        means.sort((a, b) -> Double.compare(a[0], b[0]));
+
+        List<CityRanking> warming = manager.getTopCities(RankingMeasure.FASTEST_WARMING, 5,
+                null, null, 2000, 2009);
+        assertEquals(5, warming.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(cities.getCity((int) slopes.get(i)[1]), warming.get(i).city());
+            assertEquals(slopes.get(i)[0], warming.get(i).value(), 1e-9);
+        }
+        assertSame(warming, manager.getTopCities(RankingMeasure.FASTEST_WARMING, 5,
+                null, null, 2000, 2009));
+
+        List<CityRanking> coldest = manager.getTopCities(RankingMeasure.COLDEST_MEAN, 3,
+                "Europe", null, 2000, 2009);
+        assertEquals(Math.min(3, means.size()), coldest.size());
+        for (int i = 0; i < coldest.size(); i++) {
+            assertEquals(cities.getCity((int) means.get(i)[1]), coldest.get(i).city());
+            assertEquals(means.get(i)[0], coldest.get(i).value(), 1e-9);
+        }
+
+        List<CityRanking> algeria = manager.getTopCities(RankingMeasure.HIGHEST_TEMPERATURE,
+                10, null, "Algeria", 1995, 2020);
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int year = 1995; year <= 2020; year++) {
+            highest = Math.max(highest, manager.getCitySummary("Algeria", "", "Algiers", year, 0).max());
+        }
+        assertEquals(1, algeria.size());
+        assertEquals(highest, algeria.get(0).value());
+        assertTrue(manager.getTopCities(RankingMeasure.LOWEST_TEMPERATURE, 3, null, "Atlantis",
+                1995, 2020).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getTopCities(null, 3, null, null, 1995, 2020));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getTopCities(RankingMeasure.HOTTEST_MEAN, 0, null, null, 1995, 2020));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getTopCities(RankingMeasure.HOTTEST_MEAN, 3, null, null, 2020, 1995));
+    }
+
+    @Test
+    public void testGetCityCoverage() {
+        CityCoverage coverage = manager.getCityCoverage("Algeria", "", "Algiers", 2000, 2019);
+        Set<LocalDate> valid = new HashSet<>();
+        for (WeatherReading reading : manager.getReadings(null, "Algeria", "", "Algiers",
+                LocalDate.of(2000, 1, 1), LocalDate.of(2019, 12, 31))) {
+            if (reading.avgTemp() != -99.0) {
+                valid.add(LocalDate.of(reading.year(), reading.month(), reading.day()));
+            }
+        }
+        LocalDate gapStart = null;
+        int gapDays = 0;
+        LocalDate previous = null;
+        for (LocalDate day : valid.stream().sorted().toList()) {
+            if (previous != null && day.toEpochDay() - previous.toEpochDay() - 1 > gapDays) {
+                gapDays = (int) (day.toEpochDay() - previous.toEpochDay() - 1);
+                gapStart = previous.plusDays(1);
+            }
+            previous = day;
+        }
+        assertEquals("Algiers", coverage.city());
+        assertEquals(0, coverage.startingIndex());
+        assertEquals(valid.size(), coverage.validDays());
+        assertEquals(7305, coverage.days());
+        assertEquals(gapStart, coverage.longestGapStart());
+        assertEquals(gapDays, coverage.longestGapDays());
+        assertTrue(gapDays > 0);
+
+        List<CityCoverage> complete = manager.getCitiesByCoverage(0.95, 2000, 2019);
+        for (CityCoverage city : complete) {
+            assertTrue(city.coverage() >= 0.95);
+            assertEquals(city, manager.getCityCoverage(city.country(), city.state(), city.city(),
+                    2000, 2019));
+        }
+        assertEquals(manager.getCitiesByCoverage(0.0, 2000, 2019).size(),
+                manager.getWarmingTrends().getCityCount());
+        assertEquals(0, manager.getCityCoverage("Algeria", "", "Algiers", 1900, 1900).validDays());
+        assertNull(manager.getCityCoverage("Algeria", "", "Atlantis", 2000, 2019));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getCityCoverage("Algeria", "", "Algiers", 2019, 2000));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getCityCoverage("Algeria", "", "Algiers", -1, 2000));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.getCitiesByCoverage(1.5, 2000, 2019));
+    }
+
+    @Test
+    public void testCompressedBitmap() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (double density : new double[]{0.01, 0.5, 0.99}) {
+            BitSet expected = new BitSet();
+            CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+            for (int value = 0; value < 200000; value++) {
+                if (random.nextDouble() < density) {
+                    expected.set(value);
+                    builder.add(value);
+                    builder.add(value);
+                }
+            }
+            CompressedBitmap bitmap = builder.build();
+            assertEquals(expected.cardinality(), bitmap.cardinality());
+            for (int i = 0; i < 200; i++) {
+                int from = random.nextInt(200000);
+                int to = from + random.nextInt(200000 - from + 1);
+                assertEquals(expected.get(from, to).cardinality(), bitmap.cardinality(from, to));
+                assertEquals(expected.get(from), bitmap.contains(from));
+                BitSet runs = new BitSet();
+                bitmap.forEachRun(from, to, (start, end) -> {
+                    assertTrue(start < end);
+                    runs.set(start, end);
+                });
+                assertEquals(expected.get(from, to), runs.get(from, to));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+            builder.add(5);
+            builder.add(4);
+        });
+    }
+
+    @Test
+    public void testGetAnomalies() {
+        int window = 10;
+        List<TemperatureAnomaly> anomalies = manager.getAnomalies(window, 2.5);
+        assertTrue(anomalies.size() > 0);
+        CityListStats algiers = manager.getCityListStats("Algeria", "", "Algiers");
+        WeatherReading[] readings = manager.getReadings(algiers.startingIndex(), algiers.count());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < readings.length; i++) {
+            WeatherReading reading = readings[i];
+            if (reading.avgTemp() == -99.0) {
+                continue;
+            }
+            double sum = 0.0;
+            int count = 0;
+            for (WeatherReading earlier : manager.getReadings(algiers.startingIndex(), i + 1,
+                    reading.month(), reading.day())) {
+                if (earlier.year() >= reading.year() - window && earlier.year() < reading.year()
+                        && earlier.avgTemp() != -99.0) {
+                    sum += earlier.avgTemp();
+                    count++;
+                }
+            }
+            double mean = sum / count;
+            double squares = 0.0;
+            for (WeatherReading earlier : manager.getReadings(algiers.startingIndex(), i + 1,
+                    reading.month(), reading.day())) {
+                if (earlier.year() >= reading.year() - window && earlier.year() < reading.year()
+                        && earlier.avgTemp() != -99.0) {
+                    squares += (earlier.avgTemp() - mean) * (earlier.avgTemp() - mean);
+                }
+            }
+            double deviation = Math.sqrt(squares / (count - 1));
+            if (count >= 3 && deviation > 1e-9 && Math.abs(reading.avgTemp() - mean) / deviation >= 2.5) {
+                expected.add(algiers.startingIndex() + i);
+            }
+        }
+        List<Integer> found = new ArrayList<>();
+        for (TemperatureAnomaly anomaly : anomalies) {
+            if (anomaly.index() < algiers.startingIndex() + algiers.count()) {
+                found.add(anomaly.index());
+                assertEquals(manager.getReading(anomaly.index()), anomaly.reading());
+                assertEquals(anomaly.reading().avgTemp(),
+                        anomaly.mean() + anomaly.zScore() * anomaly.standardDeviation(), 1e-6);
+            }
+        }
+        assertEquals(expected, found);
+        assertEquals(manager.getAnomalies(1000, 2.5), manager.getAnomalies(Integer.MAX_VALUE, 2.5));
+        assertThrows(IllegalArgumentException.class, () -> manager.getAnomalies(2, 3.0));
+        assertThrows(IllegalArgumentException.class, () -> manager.getAnomalies(10, 0.0));
+    }
+
+    @Test
+    public void testRegressionAccumulator() {
+        RegressionAccumulator whole = new RegressionAccumulator();
+        RegressionAccumulator first = new RegressionAccumulator();
+        RegressionAccumulator second = new RegressionAccumulator();
+        for (int year = 1995; year <= 2020; year++) {
+            double temp = 60.0 + 0.25 * (year - 1995) + ((year % 3) - 1) * 0.1;
+            whole.add(year, temp);
+            (year < 2005 ? first : second).add(year, temp);
+        }
+        first.merge(second);
+        assertEquals(whole.slope(), first.slope(), 1e-12);
+        assertEquals(0.25, whole.slope(), 0.01);
+
+        whole.add(2021, 100.0);
+        whole.remove(2021, 100.0);
+        assertEquals(first.slope(), whole.slope(), 1e-12);
+        assertEquals(26, whole.count());
+    }
+
+    @Test
+    public void testTemperatureKernels() {
+        SplittableRandom random = new SplittableRandom(17);
+        int[] years = new int[1000];
+        double[] temps = new double[years.length];
+        int[] months = new int[years.length];
+        int[] days = new int[years.length];
+        for (int i = 0; i < years.length; i++) {
+            years[i] = 1995 + random.nextInt(26);
+            temps[i] = random.nextInt(10) == 0 ? -99.0 : 40.0 + random.nextDouble() * 40.0;
+            months[i] = 1 + random.nextInt(2);
+            days[i] = 1 + random.nextInt(3);
+        }
+
+        RegressionAccumulator expected = new RegressionAccumulator();
+        for (int i = 3; i < 998; i++) {
+            if (temps[i] != -99.0) {
+                expected.add(years[i], temps[i]);
+            }
+        }
+        List<TemperatureKernels> kernels = new ArrayList<>(List.of(TemperatureKernels.scalar()));
+        if (TemperatureKernels.vector() != null) {
+            kernels.add(TemperatureKernels.vector());
+        }
+        for (TemperatureKernels kernel : kernels) {
+            RegressionAccumulator accumulator = new RegressionAccumulator();
+            kernel.regression(years, temps, 3, 995, true, accumulator);
+            assertEquals(expected.count(), accumulator.count(), kernel.name());
+            assertEquals(expected.slope(), accumulator.slope(), 1e-9, kernel.name());
+
+            int matches = kernel.countMatches(months, days, 5, 997, 2, 3);
+            int[] rows = new int[matches + 1];
+            assertEquals(matches + 1, kernel.filter(months, days, 5, 997, 2, 3, rows, 1));
+            for (int row = 5, next = 1; row < 997; row++) {
+                if (months[row] == 2 && days[row] == 3) {
+                    assertEquals(row, rows[next++], kernel.name());
+                }
+            }
+        }
+    }
+
     @Test
     public void testGetTemperatureLinearRegressionSlopeInvalid() {
         WeatherReading[] readings = new WeatherReading[]{
@@ -95,4 +567,548 @@ public class GlobalWeatherManagerTest {
         assertThrows(IllegalArgumentException.class, () ->
                 manager.getTemperatureLinearRegressionSlope(readings));
     }
+
+    @Test
+    public void testResultCache() {
+        ResultCache<?, ?> lru = ResultCache.lru(64);
+        ResultCache<?, ?> tinyLfu = ResultCache.tinyLfu(64);
+        for (ResultCache<?, ?> cache : List.of(lru, tinyLfu)) {
+            manager.setResultCache(cache);
+            try {
+                WeatherReading[] first = manager.getReadings(9000, 20000, 2, 29);
+                WeatherReading original = first[0];
+                first[0] = null;
+                WeatherReading[] second = manager.getReadings(9000, 20000, 2, 29);
+                assertEquals(original, second[0]);
+                assertEquals(manager.getTemperatureLinearRegressionSlope(second),
+                        manager.getTemperatureLinearRegressionSlope(9000, 20000, 2, 29), 1e-12);
+                manager.getTemperatureLinearRegressionSlope(9000, 20000, 2, 29);
+                assertEquals(new CacheStats(2, 2, 0), cache.stats());
+                assertThrows(IllegalArgumentException.class,
+                        () -> manager.getTemperatureLinearRegressionSlope(0, 1, 1, 1));
+            } finally {
+                manager.setResultCache(null);
+            }
+        }
+    }
+
+    @Test
+    public void testResultCacheEviction() {
+        ResultCache<Integer, Integer> lru = ResultCache.lru(100);
+        ResultCache<Integer, Integer> tinyLfu = ResultCache.tinyLfu(100);
+        for (ResultCache<Integer, Integer> cache : List.of(lru, tinyLfu)) {
+            for (int round = 0; round < 5; round++) {
+                for (int key = 0; key < 50; key++) {
+                    cache.get(key, k -> k);
+                }
+            }
+            for (int key = 1000; key < 2000; key++) {
+                cache.get(key, k -> k);
+            }
+        }
+        assertEquals(1050 - 100, lru.stats().evictions());
+        assertNull(lru.getIfPresent(0));
+        assertEquals(Integer.valueOf(0), tinyLfu.getIfPresent(0));
+        assertEquals(Integer.valueOf(49), tinyLfu.getIfPresent(49));
+        assertEquals(1050 - 100, tinyLfu.stats().evictions());
+        assertThrows(IllegalArgumentException.class, () -> ResultCache.lru(0));
+    }
+
+    @Test
+    public void testGetDatasetHeapBytes(@TempDir Path dir) throws IOException {
+        long bytes = manager.getDatasetHeapBytes();
+        assertTrue(bytes > 0);
+        assertTrue(bytes / manager.getReadingCount() < 32);
+
+        Path csv = dir.resolve("small.csv");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Africa,Algeria,,Algiers,1,1,2000,50\n"
+                + "Africa,Algeria,,Algiers,1,1,2001,51\n");
+        GlobalWeatherManager small = new GlobalWeatherManager(csv.toFile());
+        long sealed = small.getDatasetHeapBytes();
+        small.getWarmingTrends();
+        assertTrue(small.getDatasetHeapBytes() > sealed);
+    }
+
+    @Test
+    public void testIterator() {
+        int count = 0;
+        for (WeatherReading reading : manager) {
+            if (count == 1) {
+                assertEquals(manager.getReading(1), reading);
+            }
+            count++;
+        }
+        assertEquals(manager.getReadingCount(), count);
+    }
+
+    @Test
+    public void testGetLoadReport() {
+        LoadReport report = manager.getLoadReport();
+        assertEquals(manager.getReadingCount(), report.rows());
+        assertTrue(report.rowsPerSecond() > 0);
+        assertTrue(report.readNanos() > 0 && report.parseNanos() > 0 && report.indexNanos() > 0);
+        assertTrue(report.readNanos() + report.parseNanos() + report.indexNanos()
+                <= report.elapsedNanos());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        WeatherMetrics metrics = new WeatherMetrics();
+        manager.setMetricsListener(metrics);
+        try {
+            assertSame(manager.getLoadReport(), metrics.getLoadReport());
+            for (int i = 0; i < 100; i++) {
+                manager.getReading(i);
+            }
+            manager.getCityListStats("Algeria", "", "Algiers");
+            assertThrows(IndexOutOfBoundsException.class, () -> manager.getReadings(-1, 5));
+            manager.calcLinearRegressionSlope(new int[]{1, 2}, new double[]{1.0, 3.0});
+            assertEquals(100, metrics.getLatencies(QueryMethod.GET_READING).count());
+            assertEquals(1, metrics.getLatencies(QueryMethod.GET_CITY_LIST_STATS).count());
+            assertEquals(1, metrics.getLatencies(QueryMethod.GET_READINGS).count());
+            assertEquals(1, metrics.getLatencies(QueryMethod.CALC_REGRESSION_SLOPE).count());
+            assertEquals(0, metrics.getLatencies(QueryMethod.GET_REGRESSION_SLOPE).count());
+
+            metrics.registerMBeans(manager, "test");
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                assertEquals(100L, server.getAttribute(
+                        WeatherMetrics.queryName("test", QueryMethod.GET_READING), "Count"));
+                assertEquals(manager.getReadingCount(), server.getAttribute(
+                        WeatherMetrics.managerName("test"), "ReadingCount"));
+            } finally {
+                WeatherMetrics.unregisterMBeans("test");
+            }
+        } finally {
+            manager.setMetricsListener(null);
+        }
+        manager.getReading(0);
+        assertEquals(100, metrics.getLatencies(QueryMethod.GET_READING).count());
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99.0));
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000, histogram.max());
+        assertEquals(50_000.5, histogram.mean(), 1e-9);
+        assertEquals(50_000, histogram.percentile(50.0), 50_000 * 0.016);
+        assertEquals(99_000, histogram.percentile(99.0), 99_000 * 0.016);
+        assertEquals(100_000, histogram.percentile(100.0));
+        for (int bucket = 1; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.highestValue(bucket - 1) + 1));
+        }
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(101.0));
+    }
+
+    @Test
+    public void testFileNotFound() {
+        assertThrows(FileNotFoundException.class, () ->
+                new GlobalWeatherManager(new File("missing_city_temperature.csv")));
+    }
+
+    @Test
+    public void testLoadInterleavedRows(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("interleaved.csv");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Europe,Austria,,Vienna,1,2,2001,31\n"
+                + "Africa,Algeria,,Algiers,1,1,2001,51\n"
+                + "Europe,Austria,,Vienna,1,1,2001,30\n"
+                + "North America,US,Arizona,Phoenix,1,1,2010,70\n"
+                + "Africa,Algeria,,Algiers,1,1,2000,50\n"
+                + "Europe,Austria,,Vienna,1,2,2001,32\n"
+                + "Africa,Algeria,,Algiers,1,3,2001,53\n");
+
+        GlobalWeatherManager manager = new GlobalWeatherManager(csv.toFile());
+        assertEquals(7, manager.getReadingCount());
+        double[] expected = {30, 31, 32, 50, 51, 53, 70};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], manager.getReading(i).avgTemp());
+        }
+        CityListStats vienna = manager.getCityListStats("Austria", "", "Vienna");
+        CityListStats algiers = manager.getCityListStats("Algeria", "", "Algiers");
+        CityListStats phoenix = manager.getCityListStats("US", "Arizona", "Phoenix");
+        assertEquals(0, vienna.startingIndex());
+        assertEquals(3, vienna.count());
+        assertEquals(3, algiers.startingIndex());
+        assertEquals(3, algiers.count());
+        assertEquals(6, phoenix.startingIndex());
+        for (WeatherReading reading : manager.getReadings(algiers.startingIndex(), algiers.count())) {
+            assertEquals("Algiers", reading.city());
+        }
+    }
+
+    @Test
+    public void testCityUnderTwoRegions(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("regions.csv");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Africa,Algeria,,Algiers,1,1,2000,50\n"
+                + "Europe,Austria,,Vienna,1,1,2000,30\n"
+                + "Middle East,Algeria,,Algiers,1,2,2000,52\n"
+                + "Middle East,Algeria,,Algiers,1,1,2000,51\n");
+        GlobalWeatherManager manager = new GlobalWeatherManager(csv.toFile());
+        CityListStats algiers = manager.getCityListStats("Algeria", "", "Algiers");
+        assertEquals(0, algiers.startingIndex());
+        assertEquals(3, algiers.count());
+        assertEquals(3, manager.getCitySummary("Algeria", "", "Algiers", 2000, 1).count());
+        assertEquals(2, manager.getCityCoverage("Algeria", "", "Algiers", 2000, 2000).validDays());
+        for (WeatherReading reading : manager.getReadings(0, 3)) {
+            assertEquals("Africa", reading.region());
+        }
+
+        manager.addReadings(List.of(new WeatherReading("Asia", "Algeria", "", "Algiers", 1, 3, 2000, 53)));
+        assertEquals(4, manager.getCityListStats("Algeria", "", "Algiers").count());
+        assertEquals(4, manager.getCityListStats("Austria", "", "Vienna").startingIndex());
+    }
+
+    @Test
+    public void testLoadShards(@TempDir Path dir) throws IOException {
+        String header = "Region,Country,State,City,Month,Day,Year,AvgTemperature\n";
+        Path early = dir.resolve("2000s.csv");
+        Path late = dir.resolve("2010s.csv");
+        String earlyRows = "Europe,Austria,,Vienna,1,2,2001,31\n"
+                + "Africa,Algeria,,Algiers,1,1,2001,51\n"
+                + "Europe,Austria,,Vienna,1,1,2001,30\n"
+                + "Europe,Austria,,Vienna,1,1,2001,29\n"
+                + "Africa,Algeria,,Algiers,1,1,2000,50\n"
+                + "Middle East,Algeria,,Algiers,1,1,2000,49\n";
+        Files.writeString(early, header + earlyRows);
+        Files.writeString(late, header
+                + "Africa,Algeria,,Algiers,1,1,2010,60\n"
+                + "Africa,Algeria,,Algiers,1,1,2001,99\n"
+                + "North America,US,Arizona,Phoenix,1,1,2010,70\n");
+        Files.writeString(dir.resolve("notes.txt"), "not a shard\n");
+        Path joined = dir.resolve("joined.txt");
+        Files.writeString(joined, header + earlyRows
+                + "Africa,Algeria,,Algiers,1,1,2010,60\n"
+                + "North America,US,Arizona,Phoenix,1,1,2010,70\n");
+
+        GlobalWeatherManager sharded = new GlobalWeatherManager(dir.toFile());
+        GlobalWeatherManager single = new GlobalWeatherManager(joined.toFile());
+        assertEquals(8, sharded.getReadingCount());
+        assertEquals(single.getReadingCount(), sharded.getReadingCount());
+        for (int i = 0; i < single.getReadingCount(); i++) {
+            assertEquals(single.getReading(i), sharded.getReading(i));
+            assertEquals(single.getReading(i).region(), sharded.getReading(i).region());
+            assertEquals(single.getReading(i).avgTemp(), sharded.getReading(i).avgTemp());
+        }
+        assertEquals(30.0, sharded.getReading(0).avgTemp());
+        assertEquals(29.0, sharded.getReading(1).avgTemp());
+        assertEquals(50.0, sharded.getReading(3).avgTemp());
+        assertEquals(49.0, sharded.getReading(4).avgTemp());
+        assertEquals("Africa", sharded.getReading(4).region());
+        assertEquals(51.0, sharded.getReading(5).avgTemp());
+        assertEquals(4, sharded.getCityListStats("Algeria", "", "Algiers").count());
+        assertEquals(7, sharded.getCityListStats("US", "Arizona", "Phoenix").startingIndex());
+        assertSame(sharded.getReading(3).city(), sharded.getReading(6).city());
+
+        GlobalWeatherManager reversed = new GlobalWeatherManager(List.of(late.toFile(), early.toFile()));
+        assertEquals(8, reversed.getReadingCount());
+        assertEquals(0, reversed.getCityListStats("Algeria", "", "Algiers").startingIndex());
+        assertEquals(49.0, reversed.getReading(1).avgTemp());
+        assertEquals(99.0, reversed.getReading(2).avgTemp());
+        assertEquals(4, reversed.getCityListStats("US", "Arizona", "Phoenix").startingIndex());
+
+        assertThrows(FileNotFoundException.class, () ->
+                new GlobalWeatherManager(List.of(dir.resolve("missing.csv").toFile())));
+        assertThrows(IllegalArgumentException.class, () -> new GlobalWeatherManager(List.of()));
+    }
+
+    @Test
+    public void testSnapshotOfShards(@TempDir Path dir) throws IOException {
+        Path shards = Files.createDirectory(dir.resolve("shards"));
+        String header = "Region,Country,State,City,Month,Day,Year,AvgTemperature\n";
+        Path early = shards.resolve("2000s.csv");
+        Files.writeString(early, header + "Africa,Algeria,,Algiers,1,1,2001,51\n");
+        Files.writeString(shards.resolve("2010s.csv"), header + "Africa,Algeria,,Algiers,1,1,2010,60\n");
+
+        Path listed = dir.resolve("listed.gwms");
+        new GlobalWeatherManager(List.of(early.toFile())).save(listed);
+        assertEquals(1, GlobalWeatherManager.load(listed).getReadingCount());
+        byte[] bytes = Files.readAllBytes(listed);
+        bytes[bytes.length - 12] ^= 1;
+        Files.write(listed, bytes);
+        IOException damaged = assertThrows(IOException.class, () -> GlobalWeatherManager.load(listed));
+        assertTrue(damaged.getMessage().contains("pass the csv"));
+        assertEquals(1, GlobalWeatherManager.load(listed, early.toFile()).getReadingCount());
+        assertEquals(1, GlobalWeatherManager.load(listed).getReadingCount());
+
+        Path whole = dir.resolve("whole.gwms");
+        new GlobalWeatherManager(shards.toFile()).save(whole);
+        assertEquals(2, GlobalWeatherManager.load(whole).getReadingCount());
+        Files.writeString(early, "Africa,Algeria,,Algiers,1,2,2001,52\n",
+                java.nio.file.StandardOpenOption.APPEND);
+        assertEquals(3, GlobalWeatherManager.load(whole).getReadingCount());
+        assertEquals(3, GlobalWeatherManager.load(whole).getReadingCount());
+    }
+
+    @Test
+    public void testSaveAndLoadSnapshot(@TempDir Path dir) throws IOException {
+        Path snapshot = dir.resolve("city_temperature.gwms");
+        manager.save(snapshot);
+        GlobalWeatherManager loaded = GlobalWeatherManager.load(snapshot);
+        assertEquals(manager.getReadingCount(), loaded.getReadingCount());
+        assertEquals(manager.getReading(1), loaded.getReading(1));
+        int last = manager.getReadingCount() - 1;
+        assertEquals(manager.getReading(last).avgTemp(), loaded.getReading(last).avgTemp());
+        assertArrayEquals(manager.getCityListStats("Algeria", "", "Algiers").years(),
+                loaded.getCityListStats("Algeria", "", "Algiers").years());
+        assertArrayEquals(manager.getReadings(0, last, 2, 29), loaded.getReadings(0, last, 2, 29));
+        assertEquals(manager.getCitySummary("US", "Arizona", "Phoenix", 2010, 7),
+                loaded.getCitySummary("US", "Arizona", "Phoenix", 2010, 7));
+        assertEquals(manager.getCitiesByCoverage(0.5, 1995, 2019),
+                loaded.getCitiesByCoverage(0.5, 1995, 2019));
+    }
+
+    @Test
+    public void testParseSignedFields(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("signed.csv");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Africa,Algeria,,Algiers,+1,+2,+2001,+64.2\n"
+                + "Africa,Algeria,,Algiers,01,03,2001,-0.5\n");
+        GlobalWeatherManager signed = new GlobalWeatherManager(csv.toFile());
+        assertEquals(new WeatherReading("Africa", "Algeria", "", "Algiers", 1, 2, 2001, 64.2),
+                signed.getReading(0));
+        assertEquals(64.2, signed.getReading(0).avgTemp());
+        assertEquals(3, signed.getReading(1).day());
+        assertEquals(-0.5, signed.getReading(1).avgTemp());
+    }
+
+    @Test
+    public void testLoadSnapshotRebuildsWhenStale(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("readings.csv");
+        Path snapshot = dir.resolve("readings.gwms");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Africa,Algeria,,Algiers,1,1,1995,64.2\n");
+        assertEquals(1, GlobalWeatherManager.load(snapshot, csv.toFile()).getReadingCount());
+        assertTrue(Files.exists(snapshot));
+
+        Files.writeString(csv, "Africa,Algeria,,Algiers,1,2,1995,49.4\n",
+                java.nio.file.StandardOpenOption.APPEND);
+        assertEquals(2, GlobalWeatherManager.load(snapshot).getReadingCount());
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 12] ^= 1;
+        Files.write(snapshot, bytes);
+        assertEquals(2, GlobalWeatherManager.load(snapshot).getReadingCount());
+        assertFalse(java.util.Arrays.equals(bytes, Files.readAllBytes(snapshot)));
+    }
+
+    @Test
+    public void testOffHeapMatchesHeap() throws FileNotFoundException {
+        OffHeapWeatherManager offHeap = new OffHeapWeatherManager(new File("city_temperature.csv"));
+        assertEquals(manager.getReadingCount(), offHeap.getReadingCount());
+        assertEquals(manager.getReadingCount(), offHeap.getLongReadingCount());
+        assertEquals(16L * manager.getReadingCount(), offHeap.getOffHeapBytes());
+
+        // the heap manager puts each city's readings in date order, the off-heap one keeps file order
+        List<WeatherReading> expectedAll = new ArrayList<>();
+        manager.forEach(expectedAll::add);
+        List<WeatherReading> all = new ArrayList<>();
+        offHeap.forEach(all::add);
+        expectedAll.sort(null);
+        all.sort(null);
+        assertEquals(expectedAll, all);
+        for (int i = 0; i < all.size(); i += 101) {
+            assertEquals(expectedAll.get(i).avgTemp(), all.get(i).avgTemp());
+        }
+        assertEquals(manager.getReading(0).city(), offHeap.getReading(0L).city());
+        assertArrayEquals(offHeap.getReadings(9000L, 2000), offHeap.getReadings(9000, 2000));
+        WeatherReading[] expectedDay = manager.getReadings(9000, 20000, 2, 29);
+        WeatherReading[] day = offHeap.getReadings(9000, 20000, 2, 29);
+        Arrays.sort(expectedDay);
+        Arrays.sort(day);
+        assertArrayEquals(expectedDay, day);
+        assertEquals(manager.getReadings(null, "US", "Arizona", null, LocalDate.of(2001, 1, 1),
+                LocalDate.of(2002, 6, 30)), offHeap.getReadings(null, "US", "Arizona", null,
+                LocalDate.of(2001, 1, 1), LocalDate.of(2002, 6, 30)));
+        assertEquals(manager.getReadings(null, null, null, null, LocalDate.of(2010, 1, 1), null),
+                offHeap.getReadings(null, null, null, null, LocalDate.of(2010, 1, 1), null));
+
+        CityListStats expected = manager.getCityListStats("Algeria", "", "Algiers");
+        CityListStats stats = offHeap.getCityListStats("Algeria", "", "Algiers");
+        assertEquals(expected.startingIndex(), stats.startingIndex());
+        assertEquals(expected.count(), stats.count());
+        assertArrayEquals(expected.years(), stats.years());
+        assertNull(offHeap.getCityListStats("Algeria", "", "Atlantis"));
+        assertThrows(IndexOutOfBoundsException.class, () -> offHeap.getReading(-1L));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> offHeap.getReadings(offHeap.getLongReadingCount(), 1));
+
+        offHeap.close();
+        assertEquals(0, offHeap.getReadingCount());
+        assertEquals(0, offHeap.getOffHeapBytes());
+        assertNull(offHeap.getCityListStats("Algeria", "", "Algiers"));
+        assertThrows(IndexOutOfBoundsException.class, () -> offHeap.getReading(0));
+        assertFalse(offHeap.iterator().hasNext());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        int threads = 8;
+        CityListStats algiers = manager.getCityListStats("Algeria", "", "Algiers");
+        WeatherReading[] expectedDay = manager.getReadings(algiers.startingIndex(),
+                algiers.count(), 3, 15);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                results.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        int index = random.nextInt(manager.getReadingCount() - 10);
+                        WeatherReading[] range = manager.getReadings(index, 10);
+                        assertEquals(range[0], manager.getReading(index));
+                        assertEquals(9265, manager.getCityListStats("Algeria", "", "Algiers")
+                                .count());
+                        assertArrayEquals(expectedDay, manager.getReadings(
+                                algiers.startingIndex(), algiers.count(), 3, 15));
+                        if (i % 5000 == 0) {
+                            int count = 0;
+                            for (WeatherReading ignored : manager) {
+                                count++;
+                            }
+                            assertEquals(manager.getReadingCount(), count);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueryServer() throws Exception {
+        WeatherQueryServer server = new WeatherQueryServer(manager,
+                new InetSocketAddress("localhost", 0));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create(base + "/readingCount")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("{\"readingCount\":" + manager.getReadingCount() + "}", response.body());
+
+            response = client.send(HttpRequest.newBuilder(URI.create(base + "/reading?index=0"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("\"city\":\"Algiers\""));
+
+            response = client.send(HttpRequest.newBuilder(URI.create(base + "/readings?index=0&count=5"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals(5, response.body().split("\"city\"").length - 1);
+
+            response = client.send(HttpRequest.newBuilder(URI.create(base + "/reading?index=-1"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, response.statusCode());
+            response = client.send(HttpRequest.newBuilder(URI.create(
+                    base + "/cityListStats?country=Algeria&state=&city=Atlantis"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, response.statusCode());
+            response = client.send(HttpRequest.newBuilder(URI.create(base + "/nowhere"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, response.statusCode());
+
+            response = client.send(HttpRequest.newBuilder(URI.create(base + "/batch"))
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "/cityListStats?country=Algeria&state=&city=Algiers\n/reading?index=x\n"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("[{\"startingIndex\":0,\"count\":9265,"));
+            assertTrue(response.body().endsWith("{\"error\":\"Parameter index is not a number.\"}]"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testQueryServerFailure(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("small.csv");
+        Files.writeString(csv, "Region,Country,State,City,Month,Day,Year,AvgTemperature\n"
+                + "Africa,Algeria,,Algiers,1,1,2000,50\n");
+        GlobalWeatherManager failing = new GlobalWeatherManager(csv.toFile()) {
+            @Override
+            public int getReadingCount() {
+                throw new ArithmeticException("integer overflow");
+            }
+        };
+        WeatherQueryServer server = new WeatherQueryServer(failing, new InetSocketAddress("localhost", 0));
+        server.start();
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/readingCount")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, response.statusCode());
+            assertEquals("{\"error\":\"integer overflow\"}", response.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testAddReadings(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("readings.csv");
+        StringBuilder text = new StringBuilder("Region,Country,State,City,Month,Day,Year,AvgTemperature\n");
+        for (int year = 2000; year < 2010; year++) {
+            text.append("Africa,Algeria,,Algiers,1,1,").append(year).append(',').append(50 + year - 2000).append('\n');
+        }
+        for (int year = 2000; year < 2010; year++) {
+            text.append("Europe,Austria,,Vienna,1,1,").append(year).append(",30\n");
+        }
+        Files.writeString(csv, text);
+        GlobalWeatherManager small = new GlobalWeatherManager(csv.toFile());
+        WeatherReading before = small.getReading(10);
+        small.getWarmingTrends();
+        assertEquals(10, small.getTopCities(RankingMeasure.HOTTEST_MEAN, 1, null, null,
+                2000, 2200).get(0).count());
+
+        List<WeatherReading> batch = new ArrayList<>();
+        for (int year = 2010; year < 2110; year++) {
+            batch.add(new WeatherReading("Africa", "Algeria", "", "Algiers", 1, 1, year, 50 + year - 2000));
+        }
+        batch.add(new WeatherReading("Africa", "Algeria", "", "Algiers", 1, 2, 2005, 70.0));
+        batch.add(new WeatherReading("Asia", "Japan", "", "Tokyo", 1, 1, 2010, 40.0));
+        small.addReadings(batch);
+
+        assertEquals(122, small.getReadingCount());
+        CityListStats algiers = small.getCityListStats("Algeria", "", "Algiers");
+        assertEquals(111, algiers.count());
+        assertEquals(2109, algiers.years()[110]);
+        assertEquals(110, small.getReadings(algiers.startingIndex(), algiers.count(), 1, 1).length);
+        assertEquals(70.0, small.getReadings(0, 111, 1, 2)[0].avgTemp());
+        assertEquals(111, small.getCityListStats("Austria", "", "Vienna").startingIndex());
+        assertEquals(before, small.getReading(111));
+        assertEquals(121, small.getCityListStats("Japan", "", "Tokyo").startingIndex());
+        assertEquals(111, small.getTopCities(RankingMeasure.HOTTEST_MEAN, 1, null, null,
+                2000, 2200).get(0).count());
+
+        small.setResultCache(ResultCache.lru(16));
+        assertEquals("Vienna", small.getReadings(0, 112, 1, 1)[110].city());
+        small.addReadings(List.of(new WeatherReading("Africa", "Algeria", "", "Algiers", 1, 1,
+                2110, 160.0)));
+        assertEquals(111, small.getReadings(0, 112, 1, 1).length);
+        assertEquals(2110, small.getReadings(0, 112, 1, 1)[110].year());
+
+        assertEquals(160.0, small.getCitySummary("Algeria", "", "Algiers", 2110, 1).mean(), 1e-9);
+        assertEquals(2, small.getCountrySummary("Algeria", 2005, 1).count());
+        assertEquals(1, small.getRegionSummary("Asia", 2010, 0).count());
+
+        WarmingTrends trends = small.getWarmingTrends();
+        assertEquals(1.0, trends.getSlope(trends.indexOf("Algeria", "", "Algiers"), 1, 1), 1e-9);
+        assertEquals(3, trends.getCityCount());
+        assertThrows(IllegalArgumentException.class, () -> small.addReadings(null));
+    }
 }
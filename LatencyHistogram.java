@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with log-linear buckets, in the style of HdrHistogram.
+ * Values below 128 get a bucket each; above that, each power of two is split into
+ * 64 buckets, so any recorded value is known to within about 1.6% however large
+ * it is, in a fixed 3712 buckets.  Recording is lock free and may be done from
+ * any number of threads; reads taken while values are being recorded may be off
+ * by the values recorded during the read.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+
+    private final AtomicLongArray counts =
+            new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value
+     * @param value     the value, such as a latency in nanoseconds; negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        total.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Retrieves the number of values recorded
+     * @return the count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Retrieves the largest value recorded
+     * @return the exact largest value, or 0 if none have been recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Calculates the average of the values recorded
+     * @return the exact mean, or 0.0 if none have been recorded
+     */
+    public double mean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0.0 : (double) total.sum() / recorded;
+    }
+
+    /**
+     * Estimates the value below which a given share of the values fall
+     * @param percentile    the share as a percentage, from 0.0 to 100.0
+     * @return the highest value in the bucket holding that percentile, or 0 if none
+     * have been recorded
+     * @throws IllegalArgumentException if percentile is not from 0.0 to 100.0
+     */
+    public long percentile(double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 100.0)) {
+            throw new IllegalArgumentException("Percentile must be from 0 to 100.");
+        }
+        long recorded = count.sum();
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValue(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Finds the bucket of a value
+     * @param value     a value of at least 0
+     * @return the bucket's position
+     */
+    static int bucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Finds the highest value that falls in a bucket
+     * @param bucket    the bucket's position
+     * @return the highest value in the bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+        long next = (subBucket + 1) << shift;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+}
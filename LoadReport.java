@@ -0,0 +1,25 @@
+/**
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+
+/**
+ * Describes how long loading the readings took, in total and for each phase
+ * @param rows          number of readings loaded
+ * @param elapsedNanos  time taken to load them in nanoseconds
+ * @param readNanos     time taken to open and map the file, and check a snapshot's checksum
+ * @param parseNanos    time taken to turn the bytes into columns, including reading
+ *                      mapped pages from disk
+ * @param indexNanos    time taken to group, sort and index the readings
+ */
+public record LoadReport(int rows, long elapsedNanos, long readNanos, long parseNanos,
+                         long indexNanos) {
+
+    /**
+     * Calculates the loading speed
+     * @return readings loaded per second
+     */
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+}
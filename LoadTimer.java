@@ -0,0 +1,52 @@
+/**
+ * Times the phases of a load as they finish, one after another.
+ * Each phase is the time since the previous one finished.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class LoadTimer {
+
+    private final long start = System.nanoTime();
+    private long last = start;
+    private long readNanos;
+    private long parseNanos;
+    private long indexNanos;
+
+    /**
+     * Marks the end of opening and mapping the file
+     */
+    void read() {
+        readNanos += lap();
+    }
+
+    /**
+     * Marks the end of parsing the bytes into columns
+     */
+    void parsed() {
+        parseNanos += lap();
+    }
+
+    /**
+     * Marks the end of grouping, sorting and indexing the readings
+     */
+    void indexed() {
+        indexNanos += lap();
+    }
+
+    /**
+     * Finishes timing
+     * @param rows  the number of readings loaded
+     * @return the total and per-phase times
+     */
+    LoadReport report(int rows) {
+        return new LoadReport(rows, System.nanoTime() - start, readNanos, parseNanos, indexNanos);
+    }
+
+    private long lap() {
+        long now = System.nanoTime();
+        long elapsed = now - last;
+        last = now;
+        return elapsed;
+    }
+}
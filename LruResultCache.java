@@ -0,0 +1,68 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result cache that evicts the least recently used result, backed by an
+ * access-ordered LinkedHashMap under a single lock.
+ *
+ * @param <K>   type of the keys
+ * @param <V>   type of the cached results
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class LruResultCache<K, V> implements ResultCache<K, V> {
+
+    private final int maximumSize;
+    private final LinkedHashMap<K, V> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache
+     * @param maximumSize   the most results to hold; must be at least 1
+     * @throws IllegalArgumentException if maximumSize is less than 1
+     */
+    LruResultCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1.");
+        }
+        this.maximumSize = maximumSize;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruResultCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized V getIfPresent(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions);
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Receives timings from a GlobalWeatherManager.  Calls come from whichever
+ * thread ran the query, often many at once, so implementations must be
+ * thread safe and quick.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public interface MetricsListener {
+
+    /**
+     * Called once, when the listener is set, with how long loading took
+     * @param report    the total and per-phase load times
+     */
+    default void loaded(LoadReport report) {
+    }
+
+    /**
+     * Called after every call of a timed query method, including ones that throw
+     * @param method    the method called
+     * @param nanos     how long the call took in nanoseconds
+     */
+    default void called(QueryMethod method, long nanos) {
+    }
+}
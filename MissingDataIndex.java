@@ -0,0 +1,136 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Which readings of one city have a temperature, kept as two compressed bitmaps
+ * so completeness questions never have to scan the readings.
+ * <p>
+ * validRows holds the row of every reading whose temperature isn't -99.0, so a
+ * scan over a range of rows can step over missing ones a run at a time.
+ * validDays holds every calendar day with at least one such reading, as
+ * year * 65536 + day of year, so each year of a city is one bitmap container and
+ * the number of days with a temperature in a range of years is a sum of one stored
+ * count per year.  Days are packed for years 0 to MAX_YEAR; readings with other
+ * years or with dates that don't exist are left out of validDays.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class MissingDataIndex {
+
+    /**
+     * Latest year whose days are indexed
+     */
+    static final int MAX_YEAR = 9999;
+
+    private static final int YEAR_SHIFT = 16;
+
+    final CompressedBitmap validRows;
+    final CompressedBitmap validDays;
+
+    /**
+     * Indexes the rows of a block, which must be in date order
+     * @param block     the block
+     */
+    MissingDataIndex(CityBlock block) {
+        CompressedBitmap.Builder rows = new CompressedBitmap.Builder();
+        CompressedBitmap.Builder days = new CompressedBitmap.Builder();
+        for (int row = 0; row < block.size; row++) {
+            if (block.avgTemps[row] != TemperatureKernels.MISSING) {
+                rows.add(row);
+                int year = block.years[row];
+                int dayOfYear = dayOfYear(year, block.months[row], block.days[row]);
+                if (dayOfYear >= 0 && year >= 0 && year <= MAX_YEAR) {
+                    days.add(year << YEAR_SHIFT | dayOfYear);
+                }
+            }
+        }
+        validRows = rows.build();
+        validDays = days.build();
+    }
+
+    private MissingDataIndex(CompressedBitmap validRows, CompressedBitmap validDays) {
+        this.validRows = validRows;
+        this.validDays = validDays;
+    }
+
+    /**
+     * Estimates the heap used by the index
+     * @return estimated size in bytes of both bitmaps
+     */
+    long estimateHeapBytes() {
+        return 16 + 2 * 4 + validRows.estimateHeapBytes() + validDays.estimateHeapBytes();
+    }
+
+    /**
+     * Writes both bitmaps for a snapshot
+     * @param out   the snapshot stream
+     * @throws IOException if it can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        validRows.write(out);
+        validDays.write(out);
+    }
+
+    /**
+     * Reads an index written by write
+     * @param in    the snapshot, positioned at the index
+     * @return the index
+     */
+    static MissingDataIndex read(ByteBuffer in) {
+        CompressedBitmap rows = CompressedBitmap.read(in);
+        return new MissingDataIndex(rows, CompressedBitmap.read(in));
+    }
+
+    /**
+     * Measures how complete a city's record is over a range of years, reading one
+     * stored count per year and one step per run of days with temperatures
+     * @param block         the city's block
+     * @param startingIndex index of the block's first reading
+     * @param fromYear      first year, from 0 to MAX_YEAR
+     * @param toYear        last year, from fromYear to MAX_YEAR
+     * @return the coverage and longest gap
+     */
+    CityCoverage coverage(CityBlock block, int startingIndex, int fromYear, int toYear) {
+        int from = fromYear << YEAR_SHIFT;
+        int to = (toYear + 1) << YEAR_SHIFT;
+        long[] gap = {Long.MIN_VALUE, 0, 0};
+        validDays.forEachRun(from, to, (start, end) -> {
+            long first = epochDay(start);
+            if (gap[0] != Long.MIN_VALUE && first - gap[0] > gap[2]) {
+                gap[1] = gap[0];
+                gap[2] = first - gap[0];
+            }
+            gap[0] = epochDay(end - 1) + 1;
+        });
+        int days = (int) (LocalDate.of(toYear + 1, 1, 1).toEpochDay()
+                - LocalDate.of(fromYear, 1, 1).toEpochDay());
+        return new CityCoverage(block.region, block.country, block.state, block.city,
+                startingIndex, validDays.cardinality(from, to), days,
+                gap[2] == 0 ? null : LocalDate.ofEpochDay(gap[1]), (int) gap[2]);
+    }
+
+    /**
+     * Finds the day of the year of a date
+     * @param year      the year
+     * @param month     the month
+     * @param day       the day of the month
+     * @return the day of the year counting from 0, or -1 if there is no such date
+     */
+    static int dayOfYear(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1) {
+            return -1;
+        }
+        Month of = Month.of(month);
+        boolean leap = Year.isLeap(year);
+        return day > of.length(leap) ? -1 : of.firstDayOfYear(leap) + day - 2;
+    }
+
+    private static long epochDay(int packedDay) {
+        return LocalDate.ofYearDay(packedDay >>> YEAR_SHIFT, (packedDay & 0xFFFF) + 1).toEpochDay();
+    }
+}
@@ -0,0 +1,374 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Fixed-width reading rows held in direct ByteBuffers, outside the Java heap, so
+ * the garbage collector never scans or copies them and the row count is limited
+ * only by memory.  Row indexes are longs.
+ * <p>
+ * Each row is 16 bytes in native byte order:
+ * <pre>
+ * offset 0   year     int
+ * offset 4   month    short
+ * offset 6   day      short
+ * offset 8   avgTemp  double
+ * </pre>
+ * Rows are split across segments of at most SEGMENT_ROWS rows, since one buffer
+ * can't pass 2GB.  Locations are not stored in the rows: the rows are kept in file
+ * order, and each run of rows for one location is kept on the heap with the id of
+ * its location in a small dictionary.  Nothing is changed once built, and reads use
+ * only absolute gets, so any number of threads can read at once.
+ * <p>
+ * Direct buffers count against the JVM's direct memory limit, set with
+ * -XX:MaxDirectMemorySize and equal to the maximum heap size (-Xmx) by default, so
+ * a load larger than the heap needs that flag raised; past the limit allocation
+ * fails with OutOfMemoryError.  A buffer's memory is only freed once the buffer is
+ * garbage collected, so close drops every buffer as soon as the rows are no longer
+ * needed rather than leaving them to whenever this object is collected.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class OffHeapColumns {
+
+    static final int ROW_BYTES = 16;
+
+    /**
+     * Rows in a full segment, 64MB of memory
+     */
+    static final int SEGMENT_ROWS = 1 << 22;
+
+    private static final int FIRST_SEGMENT_ROWS = 1 << 12;
+
+    private ByteBuffer[] segments;
+
+    /**
+     * Index of the first row of each segment, followed by the row count
+     */
+    private long[] segmentStarts;
+
+    /**
+     * Index of the first row of each run, followed by the row count
+     */
+    private long[] runStarts;
+    private int[] runLocations;
+
+    /**
+     * Region, country, state and city of each location id
+     */
+    private String[][] locations;
+
+    /**
+     * Dense rank of each location id in country, state, city order, so comparing
+     * two locations is a single int compare; ids differing only by region share one
+     */
+    private int[] locationRanks;
+
+    /**
+     * Positions of each city's runs in row order, keyed by country, state and city
+     */
+    private final HashMap<List<String>, int[]> cityRuns = new HashMap<>();
+
+    /**
+     * Joins the rows written by a list of writers, in order
+     * @param writers   writers holding consecutive rows
+     */
+    OffHeapColumns(List<Writer> writers) {
+        ArrayList<ByteBuffer> allSegments = new ArrayList<>();
+        HashMap<List<String>, Integer> ids = new HashMap<>();
+        ArrayList<String[]> allLocations = new ArrayList<>();
+        HashMap<String, String> strings = new HashMap<>();
+        long[] starts = new long[16];
+        int[] runIds = new int[16];
+        int runs = 0;
+        long rows = 0;
+        for (Writer writer : writers) {
+            for (ByteBuffer segment : writer.segments) {
+                if (segment.position() > 0) {
+                    allSegments.add(segment.flip().slice().order(ByteOrder.nativeOrder()));
+                }
+            }
+            for (int run = 0; run < writer.runs.size(); run++) {
+                String[] location = writer.runs.get(run);
+                Integer id = ids.get(Arrays.asList(location));
+                if (id == null) {
+                    id = allLocations.size();
+                    String[] canonical = new String[location.length];
+                    for (int field = 0; field < location.length; field++) {
+                        String value = strings.putIfAbsent(location[field], location[field]);
+                        canonical[field] = value == null ? location[field] : value;
+                    }
+                    ids.put(Arrays.asList(canonical), id);
+                    allLocations.add(canonical);
+                }
+                long start = rows + writer.runStarts[run];
+                long end = rows + (run + 1 < writer.runs.size() ? writer.runStarts[run + 1] : writer.rows);
+                if (start == end) {
+                    continue;
+                }
+                if (runs > 0 && runIds[runs - 1] == id) {
+                    continue;
+                }
+                if (runs == starts.length) {
+                    starts = Arrays.copyOf(starts, runs * 2);
+                    runIds = Arrays.copyOf(runIds, runs * 2);
+                }
+                starts[runs] = start;
+                runIds[runs] = id;
+                runs++;
+            }
+            rows += writer.rows;
+        }
+
+        segments = allSegments.toArray(new ByteBuffer[0]);
+        segmentStarts = new long[segments.length + 1];
+        for (int i = 0; i < segments.length; i++) {
+            segmentStarts[i + 1] = segmentStarts[i] + segments[i].limit() / ROW_BYTES;
+        }
+        runStarts = Arrays.copyOf(starts, runs + 1);
+        runStarts[runs] = rows;
+        runLocations = Arrays.copyOf(runIds, runs);
+        locations = allLocations.toArray(new String[0][]);
+        locationRanks = new int[locations.length];
+        Integer[] byName = new Integer[locations.length];
+        Arrays.setAll(byName, id -> id);
+        Comparator<Integer> order = Comparator.<Integer, String>comparing(id -> locations[id][1])
+                .thenComparing(id -> locations[id][2])
+                .thenComparing(id -> locations[id][3]);
+        Arrays.sort(byName, order);
+        for (int i = 1; i < byName.length; i++) {
+            locationRanks[byName[i]] = locationRanks[byName[i - 1]]
+                    + (order.compare(byName[i - 1], byName[i]) == 0 ? 0 : 1);
+        }
+
+        HashMap<List<String>, ArrayList<Integer>> byCity = new HashMap<>();
+        for (int run = 0; run < runs; run++) {
+            String[] location = locations[runLocations[run]];
+            byCity.computeIfAbsent(List.of(location[1], location[2], location[3]),
+                    city -> new ArrayList<>()).add(run);
+        }
+        byCity.forEach((city, cityRunList) -> cityRuns.put(city,
+                cityRunList.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Retrieves the number of rows
+     * @return count of rows
+     */
+    long size() {
+        return segmentStarts[segments.length];
+    }
+
+    /**
+     * Retrieves the number of segments
+     * @return count of segments
+     */
+    int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Retrieves a segment, whose rows start at its position 0
+     * @param segment   position of the segment
+     * @return the segment's buffer; only absolute gets may be used on it
+     */
+    ByteBuffer segment(int segment) {
+        return segments[segment];
+    }
+
+    /**
+     * Retrieves the index of a segment's first row
+     * @param segment   position of the segment, or segmentCount for the row count
+     * @return index of the segment's first row
+     */
+    long segmentStart(int segment) {
+        return segmentStarts[segment];
+    }
+
+    /**
+     * Finds the segment holding a row
+     * @param row   a valid row index
+     * @return position of the segment
+     */
+    int segmentOf(long row) {
+        return floor(segmentStarts, segments.length, row);
+    }
+
+    /**
+     * Retrieves the number of location runs
+     * @return count of runs
+     */
+    int runCount() {
+        return runLocations.length;
+    }
+
+    /**
+     * Retrieves the index of a run's first row
+     * @param run   position of the run, or runCount for the row count
+     * @return index of the run's first row
+     */
+    long runStart(int run) {
+        return runStarts[run];
+    }
+
+    /**
+     * Retrieves the location of a run
+     * @param run   position of the run
+     * @return region, country, state and city; must not be changed
+     */
+    String[] runLocation(int run) {
+        return locations[runLocations[run]];
+    }
+
+    /**
+     * Retrieves the rank of a run's location
+     * @param run   position of the run
+     * @return rank of the location in country, state, city order
+     */
+    int runRank(int run) {
+        return locationRanks[runLocations[run]];
+    }
+
+    /**
+     * Finds the runs of a city
+     * @param country   the city's country
+     * @param state     the city's state
+     * @param city      the city
+     * @return positions of the city's runs in row order, or null if it has none;
+     * must not be changed
+     */
+    int[] cityRuns(String country, String state, String city) {
+        return cityRuns.get(List.of(country, state, city));
+    }
+
+    /**
+     * Finds the run holding a row
+     * @param row   a valid row index
+     * @return position of the run
+     */
+    int runOf(long row) {
+        return floor(runStarts, runLocations.length, row);
+    }
+
+    /**
+     * Builds the WeatherReading for a row
+     * @param row   a valid row index
+     * @return the reading
+     */
+    WeatherReading reading(long row) {
+        int segment = segmentOf(row);
+        return reading(runLocation(runOf(row)), segments[segment],
+                (int) (row - segmentStarts[segment]));
+    }
+
+    /**
+     * Builds the WeatherReading for a row of a segment
+     * @param location  the row's region, country, state and city
+     * @param segment   the segment
+     * @param row       row inside the segment
+     * @return the reading
+     */
+    static WeatherReading reading(String[] location, ByteBuffer segment, int row) {
+        return new WeatherReading(location[0], location[1], location[2], location[3],
+                month(segment, row), day(segment, row), year(segment, row), avgTemp(segment, row));
+    }
+
+    static int year(ByteBuffer segment, int row) {
+        return segment.getInt(row * ROW_BYTES);
+    }
+
+    static int month(ByteBuffer segment, int row) {
+        return segment.getShort(row * ROW_BYTES + 4);
+    }
+
+    static int day(ByteBuffer segment, int row) {
+        return segment.getShort(row * ROW_BYTES + 6);
+    }
+
+    static double avgTemp(ByteBuffer segment, int row) {
+        return segment.getDouble(row * ROW_BYTES + 8);
+    }
+
+    /**
+     * Retrieves the memory used by rows outside the heap
+     * @return size of the rows in bytes, not counting the unused end of each
+     * chunk's last segment
+     */
+    long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops every row, leaving no rows or runs, so the buffers can be freed by the
+     * next garbage collection.  Must not be called while other threads are reading.
+     */
+    void close() {
+        segments = new ByteBuffer[0];
+        segmentStarts = new long[1];
+        runStarts = new long[1];
+        runLocations = new int[0];
+        locations = new String[0][];
+        locationRanks = new int[0];
+        cityRuns.clear();
+    }
+
+    private static int floor(long[] starts, int count, long value) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= value) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the rows of one chunk into direct buffers, starting with a small
+     * segment and doubling up to SEGMENT_ROWS, so little memory is left unused
+     */
+    static final class Writer implements WeatherCsvLoader.RowSink {
+
+        private final ArrayList<ByteBuffer> segments = new ArrayList<>();
+        private final ArrayList<String[]> runs = new ArrayList<>();
+        private long[] runStarts = new long[16];
+        private ByteBuffer current;
+        private long rows;
+
+        @Override
+        public void location(String region, String country, String state, String city) {
+            if (runs.size() == runStarts.length) {
+                runStarts = Arrays.copyOf(runStarts, runs.size() * 2);
+            }
+            runStarts[runs.size()] = rows;
+            runs.add(new String[]{region, country, state, city});
+        }
+
+        @Override
+        public void add(int month, int day, int year, double avgTemp) {
+            if (month != (short) month || day != (short) day) {
+                throw new NumberFormatException("Month or day out of range: " + month + "/" + day);
+            }
+            if (current == null || !current.hasRemaining()) {
+                int capacity = current == null ? FIRST_SEGMENT_ROWS
+                        : Math.min(SEGMENT_ROWS, current.capacity() / ROW_BYTES * 2);
+                current = ByteBuffer.allocateDirect(capacity * ROW_BYTES).order(ByteOrder.nativeOrder());
+                segments.add(current);
+            }
+            current.putInt(year).putShort((short) month).putShort((short) day).putDouble(avgTemp);
+            rows++;
+        }
+    }
+}
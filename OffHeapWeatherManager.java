@@ -0,0 +1,438 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * GlobalWeatherManager for histories too large for the heap.  Readings are held
+ * off-heap in fixed-width rows (see OffHeapColumns), so a load of billions of
+ * readings adds almost nothing for the garbage collector to trace, and the heap
+ * only needs room for the readings being returned.
+ * <p>
+ * Readings stay in file order and have long indexes; the int methods of
+ * GlobalWeatherManagerInterface work on the first Integer.MAX_VALUE readings, and
+ * the long overloads reach every reading.  There are no indexes beyond location
+ * runs, so the day and date filters scan the rows they cover, at memory speed.
+ * The readings can't be changed once loaded, so every method may be called from
+ * any number of threads at once.  The rows use direct memory, which is limited by
+ * -XX:MaxDirectMemorySize (by default the same as -Xmx), so large loads need that
+ * flag raised.  The memory is released once close has been called, or the manager
+ * has become unreachable, and the garbage collector has run.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public class OffHeapWeatherManager implements GlobalWeatherManagerInterface,
+        Iterable<WeatherReading>, AutoCloseable {
+
+    private final OffHeapColumns columns;
+
+    /**
+     * How long loading the readings took
+     */
+    private final LoadReport loadReport;
+
+    /**
+     * Constructs an OffHeapWeatherManager by reading given file.
+     * The file is memory mapped and parsed in parallel chunks straight into
+     * off-heap rows, keeping the readings in file order.
+     * @param weatherInfo file Info
+     * @throws FileNotFoundException is thrown if file is not valid or found
+     */
+    public OffHeapWeatherManager(File weatherInfo) throws FileNotFoundException {
+        LoadTimer timer = new LoadTimer();
+        columns = new OffHeapColumns(WeatherCsvLoader.parse(weatherInfo, timer,
+                OffHeapColumns.Writer::new));
+        timer.indexed();
+        loadReport = timer.report((int) Math.min(columns.size(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Retrieves how long loading the readings took
+     * @return      the number of readings loaded, capped at Integer.MAX_VALUE,
+     * and the time taken
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    /**
+     * Retrieves the memory used by the readings outside the heap
+     * @return      size of the stored rows in bytes
+     */
+    public long getOffHeapBytes() {
+        return columns.offHeapBytes();
+    }
+
+    /**
+     * Drops every reading so the off-heap memory can be freed by the next garbage
+     * collection.  Afterwards the manager holds no readings.  Must not be called
+     * while other threads are still using the manager.
+     */
+    @Override
+    public void close() {
+        columns.close();
+    }
+
+    /**
+     * Retrieves a count of readings, capped at Integer.MAX_VALUE
+     *
+     * @return count of readings
+     */
+    @Override
+    public int getReadingCount() {
+        return (int) Math.min(columns.size(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves the full count of readings
+     *
+     * @return count of readings
+     */
+    public long getLongReadingCount() {
+        return columns.size();
+    }
+
+    /**
+     * Retrieves the weather reading at the specified index.
+     *
+     * @param index     the index for the desired reading; must be a valid element index.
+     * @return the reading at the specified index
+     * @throws IndexOutOfBoundsException if Index not in valid range
+     */
+    @Override
+    public WeatherReading getReading(int index) {
+        return getReading((long) index);
+    }
+
+    /**
+     * Retrieves the weather reading at the specified index.
+     *
+     * @param index     the index for the desired reading; must be a valid element index.
+     * @return the reading at the specified index
+     * @throws IndexOutOfBoundsException if Index not in valid range
+     */
+    public WeatherReading getReading(long index) {
+        if (index < 0 || index >= columns.size()) {
+            throw new IndexOutOfBoundsException("Index not in valid range");
+        }
+        return columns.reading(index);
+    }
+
+    /**
+     * Retrieves a set of weather readings.
+     *
+     * @param index     the index of the first reading; must be a valid index.
+     * @param count     the count of readings to include.  Must be at least 1.
+     *                  Must imply a valid range.
+     * @return an array of readings.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     */
+    @Override
+    public WeatherReading[] getReadings(int index, int count) {
+        return getReadings((long) index, count);
+    }
+
+    /**
+     * Retrieves a set of weather readings.
+     *
+     * @param index     the index of the first reading; must be a valid index.
+     * @param count     the count of readings to include.  Must be at least 1.
+     *                  Must imply a valid range.
+     * @return an array of readings.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     */
+    public WeatherReading[] getReadings(long index, int count) {
+        if (index < 0 || count < 1 || index + count > columns.size()) {
+            throw new IndexOutOfBoundsException("Index or count not in valid range");
+        }
+        WeatherReading[] readings = new WeatherReading[count];
+        Cursor cursor = new Cursor(index);
+        for (int i = 0; i < count; i++, cursor.next()) {
+            readings[i] = cursor.reading();
+        }
+        return readings;
+    }
+
+    /**
+     * Retrieves the readings for one month and day from a set of readings.
+     *
+     * @param index     the index of the first reading.
+     * @param count     the count of readings to check for potential inclusion.
+     *                  Must be at least 1.  Must imply a valid range.
+     * @param month     the month to filter; must be a valid month (1 to 12).
+     * @param day       the day to filter; must be a valid day (1 to 31).
+     * @return an array of readings matching the specified criteria.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     * @throws IllegalArgumentException if month or day is not valid
+     */
+    @Override
+    public WeatherReading[] getReadings(int index, int count, int month, int day) {
+        return getReadings((long) index, count, month, day);
+    }
+
+    /**
+     * Retrieves the readings for one month and day from a set of readings.
+     *
+     * @param index     the index of the first reading.
+     * @param count     the count of readings to check for potential inclusion.
+     *                  Must be at least 1.  Must imply a valid range.
+     * @param month     the month to filter; must be a valid month (1 to 12).
+     * @param day       the day to filter; must be a valid day (1 to 31).
+     * @return an array of readings matching the specified criteria.
+     * @throws IndexOutOfBoundsException if Index or count not in valid range
+     * @throws IllegalArgumentException if month or day is not valid
+     */
+    public WeatherReading[] getReadings(long index, long count, int month, int day) {
+        if (index < 0 || count < 1 || index + count > columns.size()) {
+            throw new IndexOutOfBoundsException("Index or count not in valid range");
+        }
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("Month is not valid");
+        }
+        if (day < 1 || day > 31) {
+            throw new IllegalArgumentException("Day is not valid");
+        }
+        ArrayList<WeatherReading> found = new ArrayList<>();
+        Cursor cursor = new Cursor(index);
+        for (long i = 0; i < count; i++, cursor.next()) {
+            if (cursor.month() == month && cursor.day() == day) {
+                found.add(cursor.reading());
+            }
+        }
+        return found.toArray(new WeatherReading[0]);
+    }
+
+    /**
+     * Retrieves the readings for a location between two dates, with null location
+     * parameters matching every value.  Each matching location's rows are scanned.
+     *
+     * @param region    the region to match, or null for any.
+     * @param country   the country to match, or null for any.
+     * @param state     the state to match, or null for any.
+     * @param city      the city to match, or null for any.
+     * @param from      the first date to include, or null for no lower limit.
+     * @param to        the last date to include, or null for no upper limit.
+     * @return a read-only list of the matching readings in WeatherReading.compareTo order
+     * @throws IllegalArgumentException if to is before from
+     */
+    @Override
+    public List<WeatherReading> getReadings(String region, String country, String state,
+                                            String city, LocalDate from, LocalDate to) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("To date can't be before from date.");
+        }
+        int fromKey = from == null ? Integer.MIN_VALUE : GlobalWeatherManager.dateKey(from);
+        int toKey = to == null ? Integer.MAX_VALUE : GlobalWeatherManager.dateKey(to);
+        ArrayList<WeatherReading> found = new ArrayList<>();
+        long[] sortKeys = new long[16];
+        for (int run = 0; run < columns.runCount(); run++) {
+            String[] location = columns.runLocation(run);
+            if ((region == null || location[0].equals(region))
+                    && (country == null || location[1].equals(country))
+                    && (state == null || location[2].equals(state))
+                    && (city == null || location[3].equals(city))) {
+                long rank = (long) columns.runRank(run) << 32;
+                Cursor cursor = new Cursor(columns.runStart(run));
+                for (long row = columns.runStart(run); row < columns.runStart(run + 1);
+                     row++, cursor.next()) {
+                    int key = cursor.dateKey();
+                    if (key >= fromKey && key <= toKey) {
+                        if (found.size() == sortKeys.length) {
+                            sortKeys = Arrays.copyOf(sortKeys, found.size() * 2);
+                        }
+                        sortKeys[found.size()] = rank | (key - (long) Integer.MIN_VALUE);
+                        found.add(cursor.reading());
+                    }
+                }
+            }
+        }
+        // Location rank then date in one long, so no comparison touches a string
+        long[] keys = sortKeys;
+        Integer[] order = new Integer[found.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+        WeatherReading[] sorted = new WeatherReading[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = found.get(order[i]);
+        }
+        return List.of(sorted);
+    }
+
+    /**
+     * Retrieves the stats for a city.  If the city's readings are not all together
+     * in the file, count covers all of them and startingIndex is the first.
+     *
+     * @param country   the country of interest; must not be null or blank.
+     * @param state     the state of interest; must not be null.
+     * @param city      the city of interest; must not be null or blank.
+     * @return the stats, or null if the city is not found.
+     * @throws IllegalArgumentException if Country or city is blank, or if any of the three are null
+     * @throws ArithmeticException if the city's readings start or number past Integer.MAX_VALUE
+     */
+    @Override
+    public CityListStats getCityListStats(String country, String state, String city) {
+        if (country == null || country.isEmpty()) {
+            throw new IllegalArgumentException("Country can't be null or blank.");
+        }
+        if (state == null) {
+            throw new IllegalArgumentException("State must not be null.");
+        }
+        if (city == null || city.isEmpty()) {
+            throw new IllegalArgumentException("City can't be null or blank.");
+        }
+        int[] runs = columns.cityRuns(country, state, city);
+        if (runs == null) {
+            return null;
+        }
+        long total = 0;
+        for (int run : runs) {
+            total += columns.runStart(run + 1) - columns.runStart(run);
+        }
+        int[] years = new int[Math.toIntExact(total)];
+        int count = 0;
+        for (int run : runs) {
+            Cursor cursor = new Cursor(columns.runStart(run));
+            for (long row = columns.runStart(run); row < columns.runStart(run + 1);
+                 row++, cursor.next()) {
+                years[count++] = cursor.year();
+            }
+        }
+        Arrays.sort(years);
+        return new CityListStats(Math.toIntExact(columns.runStart(runs[0])), count, years);
+    }
+
+    /**
+     * Retrieves an iterator over all weather readings, in file order.
+     *
+     * @return iterator over all readings
+     */
+    @Override
+    public Iterator<WeatherReading> iterator() {
+        return new Iterator<>() {
+            private long row;
+            private Cursor cursor;
+
+            @Override
+            public boolean hasNext() {
+                return row < columns.size();
+            }
+
+            @Override
+            public WeatherReading next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (cursor == null) {
+                    cursor = new Cursor(0);
+                } else {
+                    cursor.next();
+                }
+                row++;
+                return cursor.reading();
+            }
+        };
+    }
+
+    /**
+     * Calculates the warming slope of a set of readings, the same as
+     * GlobalWeatherManager.getTemperatureLinearRegressionSlope.
+     *
+     * @param readings      array of readings to analyze.  Ignores temperatures of -99.0.
+     * Must not be null and must contain at least two readings.
+     * @return  slope of best-fit line; positive slope indicates increasing temperatures.
+     * @throws IllegalArgumentException if readings are null or has less than 2 readings
+     */
+    @Override
+    public double getTemperatureLinearRegressionSlope(WeatherReading[] readings) {
+        return GlobalWeatherManager.slope(readings);
+    }
+
+    /**
+     * Calculates the slope of the best-fit line calculated using the Least Squares method,
+     * the same as GlobalWeatherManager.calcLinearRegressionSlope.
+     *
+     * @param x     an array of x values; must not be null and must contain at least two elements.
+     * @param y     an array of y values; must be the same length as the x array
+     *              and must not be null.
+     * @return the slope of the best-fit line
+     * @throws IllegalArgumentException if any values are null,
+     * if both arrays are different lengths, or if array length is less than 2
+     */
+    @Override
+    public double calcLinearRegressionSlope(Integer[] x, Double[] y) {
+        return GlobalWeatherManager.boxedSlope(x, y);
+    }
+
+    /**
+     * Walks rows in order, keeping track of the segment and location run of the
+     * current row so moving to the next row needs no search
+     */
+    private final class Cursor {
+
+        private int segment;
+        private ByteBuffer buffer;
+        private int row;
+        private int segmentRows;
+        private int run;
+        private long runEnd;
+        private long index;
+
+        /**
+         * Starts at a row
+         * @param index     a valid row index
+         */
+        Cursor(long index) {
+            this.index = index;
+            segment = columns.segmentOf(index);
+            buffer = columns.segment(segment);
+            row = (int) (index - columns.segmentStart(segment));
+            segmentRows = buffer.limit() / OffHeapColumns.ROW_BYTES;
+            run = columns.runOf(index);
+            runEnd = columns.runStart(run + 1);
+        }
+
+        /**
+         * Moves to the next row, which must exist unless this is the last use
+         */
+        void next() {
+            index++;
+            if (++row == segmentRows && segment + 1 < columns.segmentCount()) {
+                segment++;
+                buffer = columns.segment(segment);
+                row = 0;
+                segmentRows = buffer.limit() / OffHeapColumns.ROW_BYTES;
+            }
+            if (index == runEnd && run + 1 < columns.runCount()) {
+                run++;
+                runEnd = columns.runStart(run + 1);
+            }
+        }
+
+        int year() {
+            return OffHeapColumns.year(buffer, row);
+        }
+
+        int month() {
+            return OffHeapColumns.month(buffer, row);
+        }
+
+        int day() {
+            return OffHeapColumns.day(buffer, row);
+        }
+
+        int dateKey() {
+            return year() * 10000 + month() * 100 + day();
+        }
+
+        WeatherReading reading() {
+            return OffHeapColumns.reading(columns.runLocation(run), buffer, row);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * The query methods of GlobalWeatherManager that are timed when a
+ * MetricsListener is set.  Overloads that answer the same kind of
+ * query share one value.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public enum QueryMethod {
+    GET_READING,
+    GET_READINGS,
+    GET_READINGS_FOR_DAY,
+    GET_READINGS_BETWEEN,
+    GET_CITY_LIST_STATS,
+    GET_REGRESSION_SLOPE,
+    CALC_REGRESSION_SLOPE
+}
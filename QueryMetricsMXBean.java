@@ -0,0 +1,21 @@
+/**
+ * JMX view of the calls to one query method, registered by
+ * WeatherMetrics.registerMBeans.  Latencies are in nanoseconds.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public interface QueryMetricsMXBean {
+
+    long getCount();
+
+    double getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    long getMaxNanos();
+}
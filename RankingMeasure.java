@@ -0,0 +1,43 @@
+/**
+ * What GlobalWeatherManager.getTopCities ranks cities by, and in which direction.
+ * Temperatures of -99.0 are never counted.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public enum RankingMeasure {
+
+    /**
+     * Regression slope of temperature against year, in degrees per year, largest first
+     */
+    FASTEST_WARMING(false),
+
+    /**
+     * Mean temperature, largest first
+     */
+    HOTTEST_MEAN(false),
+
+    /**
+     * Mean temperature, smallest first
+     */
+    COLDEST_MEAN(true),
+
+    /**
+     * Highest single temperature, largest first
+     */
+    HIGHEST_TEMPERATURE(false),
+
+    /**
+     * Lowest single temperature, smallest first
+     */
+    LOWEST_TEMPERATURE(true);
+
+    /**
+     * True if smaller values rank first
+     */
+    final boolean ascending;
+
+    RankingMeasure(boolean ascending) {
+        this.ascending = ascending;
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Read-only list over runs of rows in one or more blocks.
+ * Nothing is copied when the view is made; each WeatherReading is built when it is read.
+ * A run is either a range of a block's rows, or a range of positions in an array of
+ * row numbers, such as a calendar index, for rows that are not next to each other.
+ * Sealed blocks never change, so a view keeps showing the readings it was made over
+ * even after more readings are added to the manager.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class ReadingView extends AbstractList<WeatherReading> implements RandomAccess {
+
+    private final CityBlock[] blocks;
+
+    /**
+     * Row numbers of each run, or null where the run's rows are consecutive
+     */
+    private final int[][] rowMaps;
+    private final int[] firstRows;
+
+    /**
+     * Index in the view of the first reading of each run, followed by the size
+     */
+    private final int[] starts;
+
+    /**
+     * Creates a view over runs of consecutive rows
+     * @param blocks        block of each run
+     * @param firstRows     first row of each run
+     * @param endRows       row after the last row of each run
+     * @param runs          number of runs used from the arrays
+     */
+    ReadingView(CityBlock[] blocks, int[] firstRows, int[] endRows, int runs) {
+        this(blocks, new int[runs][], firstRows, endRows, runs);
+    }
+
+    /**
+     * Creates a view over runs of rows
+     * @param blocks        block of each run
+     * @param rowMaps       row numbers of each run, or null where a run's rows are
+     *                      consecutive; never changed afterwards
+     * @param firstRows     first row, or first position in its row map, of each run
+     * @param endRows       end of each run, after its last row or position
+     * @param runs          number of runs used from the arrays
+     */
+    ReadingView(CityBlock[] blocks, int[][] rowMaps, int[] firstRows, int[] endRows, int runs) {
+        this.blocks = blocks;
+        this.rowMaps = rowMaps;
+        this.firstRows = firstRows;
+        starts = new int[runs + 1];
+        for (int i = 0; i < runs; i++) {
+            starts[i + 1] = starts[i] + endRows[i] - firstRows[i];
+        }
+    }
+
+    @Override
+    public WeatherReading get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index not in valid range");
+        }
+        int low = 0;
+        int high = starts.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return reading(low, firstRows[low] + index - starts[low]);
+    }
+
+    @Override
+    public int size() {
+        return starts[starts.length - 1];
+    }
+
+    @Override
+    public void forEach(Consumer<? super WeatherReading> action) {
+        Objects.requireNonNull(action);
+        for (int run = 0; run < starts.length - 1; run++) {
+            for (int p = firstRows[run], end = p + starts[run + 1] - starts[run]; p < end; p++) {
+                action.accept(reading(run, p));
+            }
+        }
+    }
+
+    /**
+     * Builds every reading of the view into a new array, walking the runs in order
+     * @return the readings
+     */
+    WeatherReading[] readingArray() {
+        WeatherReading[] readings = new WeatherReading[size()];
+        int next = 0;
+        for (int run = 0; run < starts.length - 1; run++) {
+            for (int p = firstRows[run], end = p + starts[run + 1] - starts[run]; p < end; p++) {
+                readings[next++] = reading(run, p);
+            }
+        }
+        return readings;
+    }
+
+    private WeatherReading reading(int run, int position) {
+        int[] rowMap = rowMaps[run];
+        return blocks[run].reading(rowMap == null ? position : rowMap[position]);
+    }
+}
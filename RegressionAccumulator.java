@@ -0,0 +1,146 @@
+/**
+ * Builds up a least squares regression slope one point at a time.
+ * Keeps running means and centered sums instead of raw sums of squares,
+ * so years near 2000 don't lose precision when squared, and never stores the points.
+ * Points can also be removed, and two accumulators can be merged.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public final class RegressionAccumulator {
+
+    private long count;
+    private double meanX;
+    private double meanY;
+
+    /**
+     * Sum of (x - meanX) * (y - meanY)
+     */
+    private double sumXY;
+
+    /**
+     * Sum of (x - meanX) squared
+     */
+    private double sumXX;
+
+    /**
+     * Adds a point
+     * @param x     x value, such as a year
+     * @param y     y value, such as a temperature
+     */
+    public void add(double x, double y) {
+        count++;
+        double dx = x - meanX;
+        meanX += dx / count;
+        meanY += (y - meanY) / count;
+        sumXY += dx * (y - meanY);
+        sumXX += dx * (x - meanX);
+    }
+
+    /**
+     * Removes a point that was added before
+     * @param x     x value of the point
+     * @param y     y value of the point
+     * @throws IllegalStateException if there are no points
+     */
+    public void remove(double x, double y) {
+        if (count == 0) {
+            throw new IllegalStateException("No points to remove.");
+        }
+        if (count == 1) {
+            reset();
+            return;
+        }
+        double oldMeanX = meanX;
+        double oldMeanY = meanY;
+        count--;
+        meanX = oldMeanX + (oldMeanX - x) / count;
+        meanY = oldMeanY + (oldMeanY - y) / count;
+        sumXY -= (x - meanX) * (y - oldMeanY);
+        sumXX -= (x - meanX) * (x - oldMeanX);
+    }
+
+    /**
+     * Adds every point of another accumulator
+     * @param other     accumulator to merge in; must not be null
+     */
+    public void merge(RegressionAccumulator other) {
+        merge(other.count, other.meanX, other.meanY, other.sumXY, other.sumXX);
+    }
+
+    /**
+     * Adds a set of points given by their count, means and centered sums
+     * @param otherCount    number of points
+     * @param otherMeanX    mean of their x values
+     * @param otherMeanY    mean of their y values
+     * @param otherSumXY    sum of (x - otherMeanX) * (y - otherMeanY)
+     * @param otherSumXX    sum of (x - otherMeanX) squared
+     */
+    void merge(long otherCount, double otherMeanX, double otherMeanY,
+               double otherSumXY, double otherSumXX) {
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = otherCount;
+            meanX = otherMeanX;
+            meanY = otherMeanY;
+            sumXY = otherSumXY;
+            sumXX = otherSumXX;
+            return;
+        }
+        long total = count + otherCount;
+        double dx = otherMeanX - meanX;
+        double dy = otherMeanY - meanY;
+        double weight = (double) count * otherCount / total;
+        meanX += dx * otherCount / total;
+        meanY += dy * otherCount / total;
+        sumXY += otherSumXY + dx * dy * weight;
+        sumXX += otherSumXX + dx * dx * weight;
+        count = total;
+    }
+
+    /**
+     * Removes every point
+     */
+    public void reset() {
+        count = 0;
+        meanX = 0.0;
+        meanY = 0.0;
+        sumXY = 0.0;
+        sumXX = 0.0;
+    }
+
+    /**
+     * Retrieves the number of points
+     * @return count of points added and not removed
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Retrieves the mean of the x values
+     * @return mean x, or 0 if there are no points
+     */
+    public double meanX() {
+        return meanX;
+    }
+
+    /**
+     * Retrieves the mean of the y values
+     * @return mean y, or 0 if there are no points
+     */
+    public double meanY() {
+        return meanY;
+    }
+
+    /**
+     * Calculates the slope of the best-fit line through the points
+     * @return the slope, or NaN if there are fewer than two points
+     * or every x value is the same
+     */
+    public double slope() {
+        return sumXY / sumXX;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.function.Function;
+
+/**
+ * A size-limited cache of query results that GlobalWeatherManager can put in front
+ * of its slower queries.  Implementations must be safe to use from many threads.
+ * Keys and values are never null, and cached values are never changed after they
+ * are stored, so they can be shared between callers.
+ *
+ * @param <K>   type of the keys
+ * @param <V>   type of the cached results
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public interface ResultCache<K, V> {
+
+    /**
+     * Creates a cache that evicts the least recently used result
+     * @param maximumSize   the most results to hold; must be at least 1
+     * @param <K>           type of the keys
+     * @param <V>           type of the cached results
+     * @return an empty cache
+     * @throws IllegalArgumentException if maximumSize is less than 1
+     */
+    static <K, V> ResultCache<K, V> lru(int maximumSize) {
+        return new LruResultCache<>(maximumSize);
+    }
+
+    /**
+     * Creates a cache using the W-TinyLFU policy: new results pass through a small
+     * recency window, and only replace an older result in the main area if they
+     * have been asked for more often, so a burst of one-off queries can't push out
+     * the popular ones
+     * @param maximumSize   the most results to hold; must be at least 1
+     * @param <K>           type of the keys
+     * @param <V>           type of the cached results
+     * @return an empty cache
+     * @throws IllegalArgumentException if maximumSize is less than 1
+     */
+    static <K, V> ResultCache<K, V> tinyLfu(int maximumSize) {
+        return new TinyLfuResultCache<>(maximumSize);
+    }
+
+    /**
+     * Looks up a result, counting a hit or a miss
+     * @param key   the key of the result
+     * @return the cached result, or null if there is none
+     */
+    V getIfPresent(K key);
+
+    /**
+     * Stores a result, evicting others if the cache is full
+     * @param key       the key of the result
+     * @param value     the result
+     */
+    void put(K key, V value);
+
+    /**
+     * Looks up a result, calculating and storing it on a miss.  The calculation runs
+     * without holding any lock, so two threads missing on the same key at once may
+     * both calculate it.
+     * @param key       the key of the result
+     * @param loader    calculates the result for a key; exceptions it throws are not cached
+     * @return the cached or newly calculated result
+     */
+    default V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            value = loader.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes every result, keeping the counters
+     */
+    void clear();
+
+    /**
+     * Retrieves the hit, miss and eviction counts since the cache was created
+     * @return the counts
+     */
+    CacheStats stats();
+}
@@ -0,0 +1,67 @@
+/**
+ * Plain loop versions of the column kernels, used when the Vector API is not
+ * available.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class ScalarKernels extends TemperatureKernels {
+
+    @Override
+    String name() {
+        return "scalar";
+    }
+
+    @Override
+    void regression(int[] x, double[] y, int offset, int length,
+                    boolean skipMissing, RegressionAccumulator into) {
+        int end = offset + length;
+        long count = 0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        for (int i = offset; i < end; i++) {
+            if (!skipMissing || y[i] != MISSING) {
+                count++;
+                sumX += x[i];
+                sumY += y[i];
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        double sumXY = 0.0;
+        double sumXX = 0.0;
+        for (int i = offset; i < end; i++) {
+            if (!skipMissing || y[i] != MISSING) {
+                double dx = x[i] - meanX;
+                sumXY += dx * (y[i] - meanY);
+                sumXX += dx * dx;
+            }
+        }
+        into.merge(count, meanX, meanY, sumXY, sumXX);
+    }
+
+    @Override
+    int countMatches(int[] months, int[] days, int from, int to, int month, int day) {
+        int matches = 0;
+        for (int row = from; row < to; row++) {
+            if (months[row] == month && days[row] == day) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    int filter(int[] months, int[] days, int from, int to, int month, int day,
+               int[] rows, int next) {
+        for (int row = from; row < to; row++) {
+            if (months[row] == month && days[row] == day) {
+                rows[next++] = row;
+            }
+        }
+        return next;
+    }
+}
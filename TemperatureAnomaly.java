@@ -0,0 +1,16 @@
+/**
+ * A reading whose temperature is far from its city's recent normal for that
+ * calendar day, such as a day of a heatwave or a cold snap.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ * @param index             index of the reading
+ * @param reading           the reading
+ * @param mean              mean temperature of the city on that calendar day over the window
+ * @param standardDeviation standard deviation of those temperatures
+ * @param zScore            how many standard deviations the reading is above the mean,
+ *                          negative when below
+ */
+public record TemperatureAnomaly(int index, WeatherReading reading, double mean,
+                                 double standardDeviation, double zScore) {
+}
@@ -0,0 +1,105 @@
+/**
+ * The tight loops over column arrays: regression sums over years and temperatures,
+ * skipping -99.0, and finding the rows of one calendar day.  There are two versions,
+ * plain loops and SIMD loops using the incubating Vector API.  The SIMD version is
+ * used when the JVM was started with --add-modules jdk.incubator.vector, unless the
+ * weather.scalarKernels system property is true; otherwise the plain loops are used,
+ * and give the same answers up to rounding.
+ * <p>
+ * Regression sums are taken in two passes, first the means and then the centered
+ * sums, so years near 2000 don't lose precision when squared and every lane can
+ * add up its own share independently.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+abstract class TemperatureKernels {
+
+    static final double MISSING = -99.0;
+
+    private static final TemperatureKernels SCALAR = new ScalarKernels();
+    private static final TemperatureKernels VECTOR = loadVector();
+    private static final TemperatureKernels SELECTED =
+            VECTOR == null || Boolean.getBoolean("weather.scalarKernels") ? SCALAR : VECTOR;
+
+    /**
+     * Retrieves the kernels queries should use
+     * @return the SIMD kernels if available and not turned off, else the plain loops
+     */
+    static TemperatureKernels get() {
+        return SELECTED;
+    }
+
+    /**
+     * Retrieves the plain loop kernels
+     * @return the kernels
+     */
+    static TemperatureKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Retrieves the SIMD kernels, even if turned off by the system property
+     * @return the kernels, or null if jdk.incubator.vector isn't loaded
+     */
+    static TemperatureKernels vector() {
+        return VECTOR;
+    }
+
+    private static TemperatureKernels loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return new VectorKernels();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves a short name for these kernels
+     * @return "scalar" or "vector"
+     */
+    abstract String name();
+
+    /**
+     * Adds points to a regression, with x from one array and y from another
+     * @param x             x values, such as years
+     * @param y             y values, such as temperatures
+     * @param offset        index of the first point in both arrays
+     * @param length        number of points
+     * @param skipMissing   whether to leave out points whose y is -99.0
+     * @param into          accumulator the points are merged into
+     */
+    abstract void regression(int[] x, double[] y, int offset, int length,
+                             boolean skipMissing, RegressionAccumulator into);
+
+    /**
+     * Counts the rows of one calendar day
+     * @param months    month column
+     * @param days      day column
+     * @param from      first row to look at
+     * @param to        row after the last one to look at
+     * @param month     month to match
+     * @param day       day to match
+     * @return number of matching rows
+     */
+    abstract int countMatches(int[] months, int[] days, int from, int to, int month, int day);
+
+    /**
+     * Writes the positions of the rows of one calendar day into an array
+     * @param months    month column
+     * @param days      day column
+     * @param from      first row to look at
+     * @param to        row after the last one to look at
+     * @param month     month to match
+     * @param day       day to match
+     * @param rows      array receiving matching row positions, in order; must have
+     *                  room for them all
+     * @param next      position in rows to write the first match to
+     * @return position in rows after the last match written
+     */
+    abstract int filter(int[] months, int[] days, int from, int to, int month, int day,
+                        int[] rows, int next);
+}
@@ -0,0 +1,238 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Count, sum, min and max of temperatures for every month and every whole year
+ * in a range of years.  Cells are laid out as (year - firstYear) * 13 + month,
+ * with month 0 holding the whole year, so any cell is read in constant time.
+ * Temperatures of -99.0 are never added.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class TemperatureRollup {
+
+    private static final int CELLS_PER_YEAR = 13;
+
+    private int firstYear;
+    private int[] counts;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+
+    /**
+     * Creates an empty rollup
+     */
+    TemperatureRollup() {
+        counts = new int[0];
+        sums = new double[0];
+        mins = new double[0];
+        maxs = new double[0];
+    }
+
+    /**
+     * Creates a rollup of a block's temperatures
+     * @param block     the block to summarize
+     */
+    TemperatureRollup(CityBlock block) {
+        this();
+        add(block);
+    }
+
+    /**
+     * Creates a copy that can be changed without affecting this rollup
+     * @return the copy
+     */
+    TemperatureRollup copy() {
+        TemperatureRollup copy = new TemperatureRollup();
+        copy.firstYear = firstYear;
+        copy.counts = counts.clone();
+        copy.sums = sums.clone();
+        copy.mins = mins.clone();
+        copy.maxs = maxs.clone();
+        return copy;
+    }
+
+    /**
+     * Estimates the heap used by the rollup
+     * @return estimated size in bytes
+     */
+    long estimateHeapBytes() {
+        return 16 + 4 + 4L * 4 + align(16 + 4L * counts.length) + 3 * align(16 + 8L * sums.length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Writes the rollup for a snapshot
+     * @param out   the snapshot stream
+     * @throws IOException if it can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(firstYear);
+        out.writeInt(counts.length);
+        WeatherSnapshot.writeInts(out, counts, counts.length);
+        WeatherSnapshot.writeDoubles(out, sums, sums.length);
+        WeatherSnapshot.writeDoubles(out, mins, mins.length);
+        WeatherSnapshot.writeDoubles(out, maxs, maxs.length);
+    }
+
+    /**
+     * Reads a rollup written by write
+     * @param in    the snapshot, positioned at the rollup
+     * @return the rollup
+     */
+    static TemperatureRollup read(ByteBuffer in) {
+        TemperatureRollup rollup = new TemperatureRollup();
+        rollup.firstYear = in.getInt();
+        int cells = in.getInt();
+        rollup.counts = WeatherSnapshot.readInts(in, cells);
+        rollup.sums = WeatherSnapshot.readDoubles(in, cells);
+        rollup.mins = WeatherSnapshot.readDoubles(in, cells);
+        rollup.maxs = WeatherSnapshot.readDoubles(in, cells);
+        return rollup;
+    }
+
+    /**
+     * Adds every temperature of a block, skipping -99.0 and months outside 1 to 12
+     * @param block     the block to add
+     */
+    void add(CityBlock block) {
+        for (int row = 0; row < block.size; row++) {
+            double temp = block.avgTemps[row];
+            int month = block.months[row];
+            if (temp != -99.0 && month >= 1 && month <= 12) {
+                int cell = cell(block.years[row]);
+                add(cell, temp);
+                add(cell + month, temp);
+            }
+        }
+    }
+
+    /**
+     * Adds every cell of another rollup
+     * @param other     the rollup to add
+     */
+    void merge(TemperatureRollup other) {
+        int years = other.counts.length / CELLS_PER_YEAR;
+        if (years == 0) {
+            return;
+        }
+        cell(other.firstYear);
+        cell(other.firstYear + years - 1);
+        int offset = (other.firstYear - firstYear) * CELLS_PER_YEAR;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                int cell = offset + i;
+                if (counts[cell] == 0) {
+                    mins[cell] = other.mins[i];
+                    maxs[cell] = other.maxs[i];
+                } else {
+                    mins[cell] = Math.min(mins[cell], other.mins[i]);
+                    maxs[cell] = Math.max(maxs[cell], other.maxs[i]);
+                }
+                counts[cell] += other.counts[i];
+                sums[cell] += other.sums[i];
+            }
+        }
+    }
+
+    /**
+     * Reads one cell
+     * @param year      the year
+     * @param month     the month from 1 to 12, or 0 for the whole year
+     * @return the summary for the cell, empty if there are no temperatures for it
+     */
+    TemperatureSummary summary(int year, int month) {
+        if (year < firstYear || year - (long) firstYear >= counts.length / CELLS_PER_YEAR) {
+            return new TemperatureSummary(0, 0.0, Double.NaN, Double.NaN);
+        }
+        int cell = (year - firstYear) * CELLS_PER_YEAR + month;
+        if (counts[cell] == 0) {
+            return new TemperatureSummary(0, 0.0, Double.NaN, Double.NaN);
+        }
+        return new TemperatureSummary(counts[cell], sums[cell], mins[cell], maxs[cell]);
+    }
+
+    /**
+     * Adds up the whole-year cells of a range of years
+     * @param fromYear  the first year
+     * @param toYear    the last year
+     * @return the summary for the years, empty if there are no temperatures in them
+     */
+    TemperatureSummary yearRange(int fromYear, int toYear) {
+        int count = 0;
+        double sum = 0.0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        int years = counts.length / CELLS_PER_YEAR;
+        long first = Math.max((long) fromYear, firstYear);
+        long last = Math.min(toYear, firstYear + years - 1L);
+        for (long year = first; year <= last; year++) {
+            int cell = (int) (year - firstYear) * CELLS_PER_YEAR;
+            if (counts[cell] > 0) {
+                min = count == 0 ? mins[cell] : Math.min(min, mins[cell]);
+                max = count == 0 ? maxs[cell] : Math.max(max, maxs[cell]);
+                count += counts[cell];
+                sum += sums[cell];
+            }
+        }
+        return new TemperatureSummary(count, sum, min, max);
+    }
+
+    private void add(int cell, double temp) {
+        if (counts[cell] == 0) {
+            mins[cell] = temp;
+            maxs[cell] = temp;
+        } else {
+            mins[cell] = Math.min(mins[cell], temp);
+            maxs[cell] = Math.max(maxs[cell], temp);
+        }
+        counts[cell]++;
+        sums[cell] += temp;
+    }
+
+    /**
+     * Finds the whole-year cell of a year, widening the year range if needed
+     * @param year  the year
+     * @return the cell holding the whole year
+     * @throws ArithmeticException if the widened range has more than Integer.MAX_VALUE cells
+     */
+    private int cell(int year) {
+        int years = counts.length / CELLS_PER_YEAR;
+        if (years == 0) {
+            firstYear = year;
+        }
+        if (year < firstYear) {
+            int shift = Math.toIntExact(((long) firstYear - year) * CELLS_PER_YEAR);
+            counts = shift(counts, shift);
+            sums = shift(sums, shift);
+            mins = shift(mins, shift);
+            maxs = shift(maxs, shift);
+            firstYear = year;
+        } else if (year >= firstYear + years) {
+            int length = Math.toIntExact((year - (long) firstYear + 1) * CELLS_PER_YEAR);
+            counts = Arrays.copyOf(counts, length);
+            sums = Arrays.copyOf(sums, length);
+            mins = Arrays.copyOf(mins, length);
+            maxs = Arrays.copyOf(maxs, length);
+        }
+        return (year - firstYear) * CELLS_PER_YEAR;
+    }
+
+    private static int[] shift(int[] values, int shift) {
+        int[] shifted = new int[values.length + shift];
+        System.arraycopy(values, 0, shifted, shift, values.length);
+        return shifted;
+    }
+
+    private static double[] shift(double[] values, int shift) {
+        double[] shifted = new double[values.length + shift];
+        System.arraycopy(values, 0, shifted, shift, values.length);
+        return shifted;
+    }
+}
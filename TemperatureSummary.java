@@ -0,0 +1,22 @@
+/**
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+
+/**
+ * Count, total, lowest and highest of a set of temperatures, not counting missing (-99.0) ones
+ * @param count     number of temperatures
+ * @param sum       total of the temperatures
+ * @param min       lowest temperature, or NaN if there are none
+ * @param max       highest temperature, or NaN if there are none
+ */
+public record TemperatureSummary(int count, double sum, double min, double max) {
+
+    /**
+     * Calculates the average temperature
+     * @return the mean, or NaN if there are no temperatures
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+}
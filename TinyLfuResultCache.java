@@ -0,0 +1,182 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result cache using the W-TinyLFU policy, under a single lock.
+ * <p>
+ * New results enter a small LRU window holding about 1% of the entries.  When the
+ * window overflows, its oldest result competes with the oldest result of the main
+ * area's probation segment, and whichever has been asked for less often, going by
+ * a count-min sketch of recent key frequencies, is evicted.  A probation result
+ * that is hit again moves to the protected segment, which holds up to 80% of the
+ * main area.  The sketch has sixteen 4-bit counters per entry, of which each key
+ * uses four, and halves them all once ten lookups per entry have been counted,
+ * so old popularity fades.
+ *
+ * @param <K>   type of the keys
+ * @param <V>   type of the cached results
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class TinyLfuResultCache<K, V> implements ResultCache<K, V> {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final int windowSize;
+    private final int protectedSize;
+    private final int mainSize;
+
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Count-min sketch of 4-bit counters, sixteen to a long
+     */
+    private final long[] sketch;
+    private final int sampleSize;
+    private int sampled;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache
+     * @param maximumSize   the most results to hold; must be at least 1
+     * @throws IllegalArgumentException if maximumSize is less than 1
+     */
+    TinyLfuResultCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1.");
+        }
+        windowSize = Math.max(1, maximumSize / 100);
+        mainSize = maximumSize - windowSize;
+        protectedSize = (int) (mainSize * 0.8);
+        sketch = new long[Math.max(16, Integer.highestOneBit(Math.min(maximumSize, 1 << 26) - 1) << 1)];
+        sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized V getIfPresent(K key) {
+        increment(key);
+        V value = window.get(key);
+        if (value == null) {
+            value = protectedEntries.get(key);
+        }
+        if (value == null) {
+            value = probation.remove(key);
+            if (value != null) {
+                protectedEntries.put(key, value);
+                if (protectedEntries.size() > protectedSize) {
+                    Map.Entry<K, V> demoted = eldest(protectedEntries);
+                    protectedEntries.remove(demoted.getKey());
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+        }
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void put(K key, V value) {
+        if (protectedEntries.containsKey(key)) {
+            protectedEntries.put(key, value);
+            return;
+        }
+        if (probation.containsKey(key)) {
+            probation.put(key, value);
+            return;
+        }
+        window.put(key, value);
+        if (window.size() <= windowSize) {
+            return;
+        }
+        Map.Entry<K, V> candidate = eldest(window);
+        window.remove(candidate.getKey());
+        if (probation.size() + protectedEntries.size() < mainSize) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        LinkedHashMap<K, V> victims = probation.isEmpty() ? protectedEntries : probation;
+        Map.Entry<K, V> victim = victims.isEmpty() ? null : eldest(victims);
+        if (victim != null && frequency(candidate.getKey()) > frequency(victim.getKey())) {
+            victims.remove(victim.getKey());
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+        evictions++;
+    }
+
+    @Override
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedEntries.clear();
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions);
+    }
+
+    private static <K, V> Map.Entry<K, V> eldest(LinkedHashMap<K, V> entries) {
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        return iterator.next();
+    }
+
+    /**
+     * Counts one more lookup of a key, halving every counter once enough
+     * lookups have been counted
+     * @param key   the key looked up
+     */
+    private void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (long seed : SEEDS) {
+            long mixed = mix(hash, seed);
+            int slot = (int) mixed & (sketch.length - 1);
+            int shift = (int) (mixed >>> 60) << 2;
+            if (((sketch[slot] >>> shift) & 0xfL) < 0xfL) {
+                sketch[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++sampled >= sampleSize) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] = (sketch[i] >>> 1) & 0x7777777777777777L;
+            }
+            sampled /= 2;
+        }
+    }
+
+    /**
+     * Estimates how often a key has been looked up recently
+     * @param key   the key
+     * @return the smallest of the key's counters, from 0 to 15
+     */
+    private int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = 0xf;
+        for (long seed : SEEDS) {
+            long mixed = mix(hash, seed);
+            int slot = (int) mixed & (sketch.length - 1);
+            int shift = (int) (mixed >>> 60) << 2;
+            frequency = Math.min(frequency, (int) ((sketch[slot] >>> shift) & 0xfL));
+        }
+        return frequency;
+    }
+
+    private static long mix(int hash, long seed) {
+        long mixed = (hash + seed) * 0x9e3779b97f4a7c15L;
+        mixed ^= mixed >>> 32;
+        return mixed * 0xbf58476d1ce4e5b9L;
+    }
+}
@@ -0,0 +1,142 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the column kernels, using the widest vectors the CPU has.
+ * Years are loaded as ints at half the width, so one int vector converts to one
+ * double vector lane for lane.  Missing temperatures are masked out rather than
+ * branched on, and the last few rows that don't fill a vector use plain loops.
+ * Only loaded when jdk.incubator.vector is in the boot layer.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class VectorKernels extends TemperatureKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> HALF_INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void regression(int[] x, double[] y, int offset, int length,
+                    boolean skipMissing, RegressionAccumulator into) {
+        int end = offset + length;
+        int vectorEnd = offset + DOUBLES.loopBound(length);
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+
+        DoubleVector sumXs = zero;
+        DoubleVector sumYs = zero;
+        long count = 0;
+        int i = offset;
+        for (; i < vectorEnd; i += DOUBLES.length()) {
+            DoubleVector xs = years(x, i);
+            DoubleVector ys = DoubleVector.fromArray(DOUBLES, y, i);
+            if (skipMissing) {
+                VectorMask<Double> present = ys.compare(VectorOperators.NE, MISSING);
+                sumXs = sumXs.add(xs, present);
+                sumYs = sumYs.add(ys, present);
+                count += present.trueCount();
+            } else {
+                sumXs = sumXs.add(xs);
+                sumYs = sumYs.add(ys);
+                count += DOUBLES.length();
+            }
+        }
+        double sumX = sumXs.reduceLanes(VectorOperators.ADD);
+        double sumY = sumYs.reduceLanes(VectorOperators.ADD);
+        for (; i < end; i++) {
+            if (!skipMissing || y[i] != MISSING) {
+                count++;
+                sumX += x[i];
+                sumY += y[i];
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+
+        DoubleVector sumXYs = zero;
+        DoubleVector sumXXs = zero;
+        for (i = offset; i < vectorEnd; i += DOUBLES.length()) {
+            DoubleVector ys = DoubleVector.fromArray(DOUBLES, y, i);
+            DoubleVector dxs = years(x, i).sub(meanX);
+            if (skipMissing) {
+                dxs = zero.blend(dxs, ys.compare(VectorOperators.NE, MISSING));
+            }
+            sumXYs = dxs.fma(ys.sub(meanY), sumXYs);
+            sumXXs = dxs.fma(dxs, sumXXs);
+        }
+        double sumXY = sumXYs.reduceLanes(VectorOperators.ADD);
+        double sumXX = sumXXs.reduceLanes(VectorOperators.ADD);
+        for (; i < end; i++) {
+            if (!skipMissing || y[i] != MISSING) {
+                double dx = x[i] - meanX;
+                sumXY += dx * (y[i] - meanY);
+                sumXX += dx * dx;
+            }
+        }
+        into.merge(count, meanX, meanY, sumXY, sumXX);
+    }
+
+    private static DoubleVector years(int[] x, int i) {
+        return (DoubleVector) IntVector.fromArray(HALF_INTS, x, i)
+                .convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    @Override
+    int countMatches(int[] months, int[] days, int from, int to, int month, int day) {
+        int vectorEnd = from + INTS.loopBound(to - from);
+        int matches = 0;
+        int row = from;
+        for (; row < vectorEnd; row += INTS.length()) {
+            matches += matches(months, days, row, month, day).trueCount();
+        }
+        for (; row < to; row++) {
+            if (months[row] == month && days[row] == day) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    int filter(int[] months, int[] days, int from, int to, int month, int day,
+               int[] rows, int next) {
+        int vectorEnd = from + INTS.loopBound(to - from);
+        int row = from;
+        for (; row < vectorEnd; row += INTS.length()) {
+            VectorMask<Integer> found = matches(months, days, row, month, day);
+            if (!found.anyTrue()) {
+                continue;
+            }
+            long bits = found.toLong();
+            while (bits != 0) {
+                rows[next++] = row + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        for (; row < to; row++) {
+            if (months[row] == month && days[row] == day) {
+                rows[next++] = row;
+            }
+        }
+        return next;
+    }
+
+    private static VectorMask<Integer> matches(int[] months, int[] days, int row, int month, int day) {
+        return IntVector.fromArray(INTS, months, row).compare(VectorOperators.EQ, month)
+                .and(IntVector.fromArray(INTS, days, row).compare(VectorOperators.EQ, day));
+    }
+}
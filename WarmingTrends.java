@@ -0,0 +1,140 @@
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Regression slope of temperature against year for every city and calendar day.
+ * Cities are numbered in reading order and days are addressed by month and day.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public final class WarmingTrends {
+
+    private final String[][] locations;
+
+    /**
+     * Slope for each city and calendar slot, NaN where there are fewer than two readings
+     */
+    private final double[] slopes;
+
+    /**
+     * Readings used for each city and calendar slot
+     */
+    private final int[] counts;
+
+    /**
+     * Collects the slopes for every block of a dataset in parallel.  Each block keeps
+     * its regression sums once built, so later calls and added readings only cost
+     * the table itself.
+     * @param dataset   the readings to analyze
+     */
+    WarmingTrends(WeatherDataset dataset) {
+        int cities = dataset.blockCount();
+        locations = new String[cities][];
+        slopes = new double[cities * CalendarIndex.SLOTS];
+        counts = new int[cities * CalendarIndex.SLOTS];
+        IntStream.range(0, cities).parallel().forEach(i -> {
+            CityBlock block = dataset.block(i);
+            locations[i] = new String[]{block.region, block.country, block.state, block.city};
+            RegressionAccumulator[] daySlopes = block.daySlopes();
+            for (int slot = 0; slot < CalendarIndex.SLOTS; slot++) {
+                int cell = i * CalendarIndex.SLOTS + slot;
+                counts[cell] = (int) daySlopes[slot].count();
+                slopes[cell] = counts[cell] < 2 ? Double.NaN : daySlopes[slot].slope();
+            }
+        });
+    }
+
+    /**
+     * Retrieves the number of cities
+     * @return count of cities
+     */
+    public int getCityCount() {
+        return locations.length;
+    }
+
+    /**
+     * Finds a city's number
+     * @param country   the country of interest
+     * @param state     the state of interest
+     * @param city      the city of interest
+     * @return the city's number, or -1 if it isn't in the table
+     */
+    public int indexOf(String country, String state, String city) {
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i][3].equals(city) && locations[i][2].equals(state)
+                    && locations[i][1].equals(country)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the region of a city
+     * @param cityIndex     the city's number
+     * @return the region
+     */
+    public String getRegion(int cityIndex) {
+        return locations[cityIndex][0];
+    }
+
+    /**
+     * Retrieves the country of a city
+     * @param cityIndex     the city's number
+     * @return the country
+     */
+    public String getCountry(int cityIndex) {
+        return locations[cityIndex][1];
+    }
+
+    /**
+     * Retrieves the state of a city
+     * @param cityIndex     the city's number
+     * @return the state, may be blank
+     */
+    public String getState(int cityIndex) {
+        return locations[cityIndex][2];
+    }
+
+    /**
+     * Retrieves the name of a city
+     * @param cityIndex     the city's number
+     * @return the city
+     */
+    public String getCity(int cityIndex) {
+        return locations[cityIndex][3];
+    }
+
+    /**
+     * Retrieves the warming slope for a city on a calendar day
+     * @param cityIndex     the city's number
+     * @param month         the month; must be a valid month (1 to 12).
+     * @param day           the day; must be a valid day (1 to 31).
+     * @return slope in degrees per year, or NaN if the city has fewer than two readings that day
+     * @throws IllegalArgumentException if month or day is not valid
+     */
+    public double getSlope(int cityIndex, int month, int day) {
+        return slopes[cell(cityIndex, month, day)];
+    }
+
+    /**
+     * Retrieves the number of readings behind a slope, not counting missing temperatures
+     * @param cityIndex     the city's number
+     * @param month         the month; must be a valid month (1 to 12).
+     * @param day           the day; must be a valid day (1 to 31).
+     * @return count of readings
+     * @throws IllegalArgumentException if month or day is not valid
+     */
+    public int getReadingCount(int cityIndex, int month, int day) {
+        return counts[cell(cityIndex, month, day)];
+    }
+
+    private int cell(int cityIndex, int month, int day) {
+        int slot = CalendarIndex.slot(month, day);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Month or day is not valid");
+        }
+        return Objects.checkIndex(cityIndex, locations.length) * CalendarIndex.SLOTS + slot;
+    }
+}
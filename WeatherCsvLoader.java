@@ -0,0 +1,394 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Loads a weather csv file into a WeatherDataset, or into any other RowSink.
+ * The file is memory mapped and split into chunks that end on line breaks,
+ * the chunks are parsed in parallel straight from the mapped bytes, and the
+ * results are merged back in file order, so each location's readings come in
+ * the order the file has them and locations in the order they first appear.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class WeatherCsvLoader {
+
+    /**
+     * Smallest chunk worth handing to its own task
+     */
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Largest chunk, kept well below the 2GB limit of a single mapping
+     */
+    private static final long MAX_CHUNK_BYTES = 1 << 28;
+
+    /**
+     * Powers of ten that are exact as doubles
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private WeatherCsvLoader() {
+    }
+
+    /**
+     * Receives the rows of one chunk in file order
+     */
+    interface RowSink {
+
+        /**
+         * Called before the first row and whenever the location changes
+         * @param region    region of the following rows
+         * @param country   country of the following rows
+         * @param state     state of the following rows
+         * @param city      city of the following rows
+         */
+        void location(String region, String country, String state, String city);
+
+        /**
+         * Called for each row
+         * @param month     month of the reading
+         * @param day       day of the reading
+         * @param year      year of the reading
+         * @param avgTemp   average temperature of the reading
+         */
+        void add(int month, int day, int year, double avgTemp);
+    }
+
+    /**
+     * Reads every reading in the file, skipping the header line
+     * @param file  csv file of readings
+     * @param timer marks the end of the read, parse and index phases
+     * @return the loaded dataset
+     * @throws FileNotFoundException if the file is not valid or found
+     */
+    static WeatherDataset load(File file, LoadTimer timer) throws FileNotFoundException {
+        List<WeatherDataset.Builder> parsed = parse(file, timer, WeatherDataset.Builder::new);
+        WeatherDataset.Builder builder = new WeatherDataset.Builder();
+        for (WeatherDataset.Builder chunk : parsed) {
+            builder.addAll(chunk);
+        }
+        WeatherDataset dataset = builder.build();
+        timer.indexed();
+        return dataset;
+    }
+
+    /**
+     * Reads every reading in a set of shard files, each with a header line, into one
+     * dataset ordered as if the files were joined in list order and loaded as one
+     * file.  Each shard is parsed by its own task, its chunks in parallel as for a
+     * single file, and the shards are then merged.  A reading equal by
+     * WeatherReading.equals to one in an earlier shard is dropped.
+     * @param files shard csv files; must not be null or empty
+     * @param timer marks the end of the read, parse and index phases
+     * @return the loaded dataset
+     * @throws FileNotFoundException if any file is not valid or found
+     * @throws IllegalArgumentException if files is null or empty
+     */
+    static WeatherDataset load(List<File> files, LoadTimer timer) throws FileNotFoundException {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("Shards can't be null or empty.");
+        }
+        for (File file : files) {
+            if (file == null || !file.isFile()) {
+                throw new FileNotFoundException(file + " (No such file)");
+            }
+        }
+        timer.read();
+        List<WeatherDataset.Builder> shards;
+        try {
+            shards = files.parallelStream()
+                    .map(WeatherCsvLoader::parseShard)
+                    .toList();
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof FileNotFoundException missing) {
+                throw missing;
+            }
+            throw e;
+        }
+        timer.parsed();
+        WeatherDataset dataset = WeatherDataset.merge(shards);
+        timer.indexed();
+        return dataset;
+    }
+
+    /**
+     * Lists the shard files of a directory
+     * @param directory     directory holding one csv file per shard
+     * @return the directory's .csv files, sorted by name
+     * @throws FileNotFoundException if the directory is not found or has no csv files
+     */
+    static List<File> shards(File directory) throws FileNotFoundException {
+        File[] files = directory.listFiles(file -> file.isFile() && file.getName().endsWith(".csv"));
+        if (files == null || files.length == 0) {
+            throw new FileNotFoundException(directory + " (No csv files)");
+        }
+        Arrays.sort(files);
+        return List.of(files);
+    }
+
+    /**
+     * Parses one shard into a builder, joining its chunks in file order
+     * @param file  shard csv file
+     * @return builder holding the shard's readings
+     */
+    private static WeatherDataset.Builder parseShard(File file) {
+        try {
+            WeatherDataset.Builder shard = new WeatherDataset.Builder();
+            for (WeatherDataset.Builder chunk : parse(file, new LoadTimer(), WeatherDataset.Builder::new)) {
+                shard.addAll(chunk);
+            }
+            return shard;
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses every line of the file, after its header, into one sink per chunk
+     * @param file      csv file of readings
+     * @param timer     marks the end of the read and parse phases
+     * @param sinks     creates an empty sink for each chunk
+     * @param <S>       type of the sinks
+     * @return the filled sinks in file order
+     * @throws FileNotFoundException if the file is not valid or found
+     */
+    static <S extends RowSink> List<S> parse(File file, LoadTimer timer, Supplier<S> sinks)
+            throws FileNotFoundException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file + " (No such file)");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer[] chunks = mapChunks(channel);
+            timer.read();
+            List<S> parsed = Arrays.stream(chunks).parallel()
+                    .map(chunk -> parseChunk(chunk, sinks.get()))
+                    .toList();
+            timer.parsed();
+            return parsed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps the file, after its header line, as chunks that each end on a line break
+     * @param channel   channel of the file
+     * @return mapped chunks in file order
+     * @throws IOException if the file can't be read
+     */
+    private static MappedByteBuffer[] mapChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long start = nextLine(channel, 0, size);
+        int tasks = Runtime.getRuntime().availableProcessors() * 4;
+        long chunkSize = Math.max(MIN_CHUNK_BYTES,
+                Math.min(MAX_CHUNK_BYTES, (size - start) / tasks + 1));
+
+        ArrayList<MappedByteBuffer> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = start + chunkSize >= size ? size
+                    : nextLine(channel, start + chunkSize, size);
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            start = end;
+        }
+        return chunks.toArray(new MappedByteBuffer[0]);
+    }
+
+    /**
+     * Finds the first position after the next line break
+     * @param channel   channel of the file
+     * @param position  position to start searching from
+     * @param size      size of the file
+     * @return position of the start of the next line, or the file size if there is none
+     * @throws IOException if the file can't be read
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses every line of one chunk
+     * @param chunk     mapped bytes made of whole lines
+     * @param sink      receives the chunk's readings in order
+     * @param <S>       type of the sink
+     * @return the sink
+     */
+    private static <S extends RowSink> S parseChunk(ByteBuffer chunk, S sink) {
+        byte[] text = new byte[256];
+        int[] commas = new int[7];
+        int limit = chunk.limit();
+        int lineStart = 0;
+        int lastLocationStart = -1;
+        int lastLocationEnd = -1;
+
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            int fields = 0;
+            byte b;
+            while (lineEnd < limit && (b = chunk.get(lineEnd)) != '\n') {
+                if (b == ',' && fields < commas.length) {
+                    commas[fields++] = lineEnd;
+                }
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                lineStart = next;
+                continue;
+            }
+            if (fields != commas.length) {
+                throw new NumberFormatException("Malformed line: " + text(chunk, lineStart, lineEnd, text));
+            }
+
+            int locationEnd = commas[3];
+            if (lastLocationStart < 0 || !sameBytes(chunk, lastLocationStart, lastLocationEnd,
+                    lineStart, locationEnd)) {
+                sink.location(
+                        text(chunk, lineStart, commas[0], text),
+                        text(chunk, commas[0] + 1, commas[1], text),
+                        text(chunk, commas[1] + 1, commas[2], text),
+                        text(chunk, commas[2] + 1, locationEnd, text));
+                lastLocationStart = lineStart;
+                lastLocationEnd = locationEnd;
+            }
+            sink.add(parseInt(chunk, commas[3] + 1, commas[4]),
+                    parseInt(chunk, commas[4] + 1, commas[5]),
+                    parseInt(chunk, commas[5] + 1, commas[6]),
+                    parseDouble(chunk, commas[6] + 1, lineEnd, text));
+            lineStart = next;
+        }
+        return sink;
+    }
+
+    /**
+     * Compares two byte ranges of the same buffer
+     * @return true if both ranges hold the same bytes
+     */
+    private static boolean sameBytes(ByteBuffer buffer, int start, int end,
+                                     int otherStart, int otherEnd) {
+        if (end - start != otherEnd - otherStart) {
+            return false;
+        }
+        for (int i = end - 1, j = otherEnd - 1; i >= start; i--, j--) {
+            if (buffer.get(i) != buffer.get(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a range of bytes as UTF-8
+     * @param buffer    buffer holding the bytes
+     * @param start     first byte
+     * @param end       byte after the last one
+     * @param scratch   scratch space, used when big enough
+     * @return the decoded string
+     */
+    private static String text(ByteBuffer buffer, int start, int end, byte[] scratch) {
+        int length = end - start;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(start, bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a decimal int from a range of bytes.  Anything but an optional sign
+     * and up to nine ASCII digits goes to Integer.parseInt.
+     * @param buffer    buffer holding the digits
+     * @param start     first byte
+     * @param end       byte after the last one
+     * @return the parsed value, identical to Integer.parseInt
+     * @throws NumberFormatException if the range is not an int
+     */
+    static int parseInt(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative || i < end && buffer.get(i) == '+') {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(text(buffer, start, end, new byte[0]));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(text(buffer, start, end, new byte[0]));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a plain decimal number such as 64.2 or -99 from a range of bytes.
+     * Anything else, like exponents or very long numbers, goes to Double.parseDouble.
+     * @param buffer    buffer holding the number
+     * @param start     first byte
+     * @param end       byte after the last one
+     * @param scratch   scratch space for the fallback
+     * @return the parsed value, identical to Double.parseDouble
+     * @throws NumberFormatException if the range is not a number
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end, byte[] scratch) {
+        int i = start;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative || (i < end && buffer.get(i) == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        if (i != end || digits == 0 || digits > 15) {
+            return Double.parseDouble(text(buffer, start, end, scratch));
+        }
+        double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,624 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar storage for all weather readings.
+ * Readings are grouped into one CityBlock per location, in the order each
+ * location first appears, and a reading index is mapped to its block
+ * through a table of block starting indexes.  A location is a country, state
+ * and city, as WeatherReading.equals has it; a city listed under more than one
+ * region gets a single block, and every one of its readings reports the region
+ * it first appeared under.  So each location's readings have
+ * consecutive indexes, in date order; readings with the same date keep the order
+ * they were added in.  Input that is already grouped by location and in date
+ * order, like city_temperature.csv, keeps its own order, but for input with the
+ * rows of a location spread out, reading i is not the input's i-th row.
+ * WeatherReading objects are only created when a row is asked for.
+ * <p>
+ * A dataset is immutable once built: the rows of each block are put in date
+ * order when it is created, and nothing writes to the blocks or indexes afterwards.
+ * Adding readings creates a new dataset that shares every unchanged block.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class WeatherDataset {
+
+    /**
+     * Blocks in reading order
+     */
+    private final CityBlock[] blocks;
+
+    /**
+     * Index of the first reading of each block, followed by the total count
+     */
+    private final int[] blockStarts;
+
+    /**
+     * Block position of each city
+     */
+    private final CityIndex cityIndex;
+
+    /**
+     * Stats for each block, all built before the dataset is published, so a lookup
+     * never builds any
+     */
+    private final CityListStats[] stats;
+
+    /**
+     * Counts how many times readings have been added since loading, so results
+     * cached for one version are never returned for another
+     */
+    final long version;
+
+    /**
+     * Rollups of every country and region, built the first time they are needed
+     */
+    private volatile GroupRollups groupRollups;
+
+    /**
+     * Creates a dataset over filled blocks, sealing each of them in parallel
+     * @param blocks    blocks in reading order
+     */
+    WeatherDataset(CityBlock[] blocks) {
+        this(blocks, new CityIndex(blocks), 0);
+        IntStream.range(0, blocks.length).parallel().forEach(i -> {
+            blocks[i].seal();
+            stats[i] = statsOf(i);
+        });
+    }
+
+    /**
+     * Creates a dataset over blocks that are already sealed
+     * @param blocks    sealed blocks in reading order
+     * @return the dataset
+     */
+    static WeatherDataset ofSealed(CityBlock[] blocks) {
+        WeatherDataset dataset = new WeatherDataset(blocks, new CityIndex(blocks), 0);
+        for (int i = 0; i < blocks.length; i++) {
+            dataset.stats[i] = dataset.statsOf(i);
+        }
+        return dataset;
+    }
+
+    /**
+     * Merges separately loaded shards into one dataset, ordered as if the shards'
+     * files had been joined end to end and loaded as one file: locations in the order
+     * they first appear across the shards, and each location's readings by date.
+     * Locations are keyed the way Builder.block keys them, so each shard holds at most
+     * one block per location, and the blocks of each location, one per shard, are
+     * gathered in shard order and merged by date in parallel.  A reading whose location and date, which is what
+     * WeatherReading.equals compares, already came from an earlier shard is dropped;
+     * repeats within one shard are kept, as they would be in a single file.
+     * The location strings of the merged blocks are shared across shards.
+     * @param shards    builders holding each shard's readings, in priority order
+     * @return the merged dataset
+     */
+    static WeatherDataset merge(List<Builder> shards) {
+        LinkedHashMap<String, List<CityBlock>> locations = new LinkedHashMap<>();
+        for (Builder shard : shards) {
+            for (CityBlock block : shard.blocks) {
+                String key = CityBlock.locationKey(block.country, block.state, block.city);
+                locations.computeIfAbsent(key, location -> new ArrayList<>()).add(block);
+            }
+        }
+
+        List<List<CityBlock>> parts = new ArrayList<>(locations.values());
+        HashMap<String, String> strings = new HashMap<>();
+        CityBlock[] merged = new CityBlock[parts.size()];
+        String[][] names = new String[merged.length][];
+        for (int i = 0; i < merged.length; i++) {
+            CityBlock first = parts.get(i).get(0);
+            names[i] = new String[]{first.region, first.country, first.state, first.city};
+            for (int field = 0; field < names[i].length; field++) {
+                String canonical = strings.putIfAbsent(names[i][field], names[i][field]);
+                if (canonical != null) {
+                    names[i][field] = canonical;
+                }
+            }
+        }
+        IntStream.range(0, merged.length).parallel().forEach(i -> merged[i] = CityBlock.merge(
+                names[i][0], names[i][1], names[i][2], names[i][3], parts.get(i)));
+        return new WeatherDataset(merged);
+    }
+
+    /**
+     * Creates a dataset over sealed blocks
+     * @param blocks        blocks in reading order
+     * @param cityIndex     index of the blocks
+     * @param version       number of times readings have been added
+     */
+    private WeatherDataset(CityBlock[] blocks, CityIndex cityIndex, long version) {
+        this.blocks = blocks;
+        this.cityIndex = cityIndex;
+        this.version = version;
+        stats = new CityListStats[blocks.length];
+        blockStarts = new int[blocks.length + 1];
+        for (int i = 0; i < blocks.length; i++) {
+            blockStarts[i + 1] = blockStarts[i] + blocks[i].size;
+        }
+    }
+
+    /**
+     * Creates a dataset with more readings.  Readings for a known location are added
+     * to the end of that location's block and new locations get new blocks after all
+     * existing ones.  Blocks without new readings, and the city index when no location
+     * is new, are shared with this dataset, so the work done is proportional to the
+     * batch and the number of cities it touches rather than to the whole dataset.
+     * The stats of the cities touched are built here, and the stats of cities whose
+     * readings moved only get a new starting index, so lookups build nothing.
+     * @param readings  readings to add; none may be null
+     * @return the new dataset
+     */
+    WeatherDataset withReadings(Iterable<WeatherReading> readings) {
+        HashMap<Integer, CityBlock> batches = new HashMap<>();
+        Builder added = null;
+        for (WeatherReading reading : readings) {
+            int position = cityIndex.get(reading.country(), reading.state(), reading.city());
+            if (position >= 0) {
+                CityBlock known = blocks[position];
+                batches.computeIfAbsent(position, p -> new CityBlock(known.region,
+                        known.country, known.state, known.city))
+                        .add(reading.month(), reading.day(), reading.year(), reading.avgTemp());
+            } else {
+                if (added == null) {
+                    added = new Builder(blocks);
+                }
+                added.add(reading.region(), reading.country(), reading.state(), reading.city(),
+                        reading.month(), reading.day(), reading.year(), reading.avgTemp());
+            }
+        }
+
+        CityBlock[] newBlocks = added == null ? new CityBlock[0]
+                : added.blocks.toArray(new CityBlock[0]);
+        CityBlock[] next = Arrays.copyOf(blocks, blocks.length + newBlocks.length);
+        batches.forEach((position, batch) -> next[position] = next[position].append(batch));
+        for (int i = 0; i < newBlocks.length; i++) {
+            newBlocks[i].trim();
+            newBlocks[i].seal();
+            next[blocks.length + i] = newBlocks[i];
+        }
+        WeatherDataset dataset = new WeatherDataset(next,
+                newBlocks.length == 0 ? cityIndex : new CityIndex(next), version + 1);
+        for (int i = 0; i < next.length; i++) {
+            if (i >= blocks.length || next[i] != blocks[i]) {
+                dataset.stats[i] = dataset.statsOf(i);
+            } else if (stats[i].startingIndex() != dataset.blockStarts[i]) {
+                dataset.stats[i] = stats[i].movedTo(dataset.blockStarts[i]);
+            } else {
+                dataset.stats[i] = stats[i];
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Retrieves the number of readings
+     * @return count of readings
+     */
+    int size() {
+        return blockStarts[blocks.length];
+    }
+
+    /**
+     * Retrieves the number of blocks
+     * @return count of blocks
+     */
+    int blockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Retrieves a block by its position
+     * @param blockIndex    position of the block
+     * @return the block
+     */
+    CityBlock block(int blockIndex) {
+        return blocks[blockIndex];
+    }
+
+    /**
+     * Retrieves the index of the first reading in a block
+     * @param blockIndex    position of the block
+     * @return index of the block's first reading
+     */
+    int blockStart(int blockIndex) {
+        return blockStarts[blockIndex];
+    }
+
+    /**
+     * Finds the stats for a city
+     * @param country   the country of interest
+     * @param state     the state of interest
+     * @param city      the city of interest
+     * @return the city's stats, or null if there are no readings for it
+     */
+    CityListStats cityStats(String country, String state, String city) {
+        int position = cityIndex.get(country, state, city);
+        if (position < 0) {
+            return null;
+        }
+        return stats[position];
+    }
+
+    /**
+     * Builds the stats of a block.  A sealed block's years are already sorted, so
+     * its year column is used as is unless it has spare capacity to trim.
+     * @param position  position of the block
+     * @return the block's stats
+     */
+    private CityListStats statsOf(int position) {
+        return new CityListStats(blockStarts[position], blocks[position].size,
+                blocks[position].sortedYears());
+    }
+
+    /**
+     * Retrieves the monthly rollup of a city
+     * @param country   the country of interest
+     * @param state     the state of interest
+     * @param city      the city of interest
+     * @return the city's rollup, or null if there are no readings for it
+     */
+    TemperatureRollup cityRollup(String country, String state, String city) {
+        int position = cityIndex.get(country, state, city);
+        return position < 0 ? null : blocks[position].rollup;
+    }
+
+    /**
+     * Measures how complete a city's record is over a range of years
+     * @param country   the country of interest
+     * @param state     the state of interest
+     * @param city      the city of interest
+     * @param fromYear  first year, from 0 to MissingDataIndex.MAX_YEAR
+     * @param toYear    last year, from fromYear to MissingDataIndex.MAX_YEAR
+     * @return the city's coverage, or null if there are no readings for it
+     */
+    CityCoverage cityCoverage(String country, String state, String city, int fromYear, int toYear) {
+        int position = cityIndex.get(country, state, city);
+        return position < 0 ? null : blocks[position].missingData()
+                .coverage(blocks[position], blockStarts[position], fromYear, toYear);
+    }
+
+    /**
+     * Finds the cities whose records cover at least a share of the days in a range of years
+     * @param minCoverage   smallest share of days with a temperature, from 0.0 to 1.0
+     * @param fromYear      first year, from 0 to MissingDataIndex.MAX_YEAR
+     * @param toYear        last year, from fromYear to MissingDataIndex.MAX_YEAR
+     * @return the cities' coverage in reading order
+     */
+    List<CityCoverage> citiesByCoverage(double minCoverage, int fromYear, int toYear) {
+        return IntStream.range(0, blocks.length)
+                .mapToObj(i -> blocks[i].missingData().coverage(blocks[i], blockStarts[i],
+                        fromYear, toYear))
+                .filter(coverage -> coverage.coverage() >= minCoverage)
+                .toList();
+    }
+
+    /**
+     * Retrieves the monthly rollup of a country, made by merging its cities' rollups
+     * @param country   the country of interest
+     * @return the country's rollup, or null if there are no readings for it
+     */
+    TemperatureRollup countryRollup(String country) {
+        return groupRollups().countries().get(country);
+    }
+
+    /**
+     * Retrieves the monthly rollup of a region, made by merging its cities' rollups
+     * @param region    the region of interest
+     * @return the region's rollup, or null if there are no readings for it
+     */
+    TemperatureRollup regionRollup(String region) {
+        return groupRollups().regions().get(region);
+    }
+
+    private GroupRollups groupRollups() {
+        GroupRollups groups = groupRollups;
+        if (groups == null) {
+            groups = new GroupRollups(new HashMap<>(), new HashMap<>());
+            for (CityBlock block : blocks) {
+                groups.countries().computeIfAbsent(block.country, key -> new TemperatureRollup())
+                        .merge(block.rollup);
+                groups.regions().computeIfAbsent(block.region, key -> new TemperatureRollup())
+                        .merge(block.rollup);
+            }
+            groupRollups = groups;
+        }
+        return groups;
+    }
+
+    /**
+     * Country and region rollups, published together
+     * @param countries     rollup of each country
+     * @param regions       rollup of each region
+     */
+    private record GroupRollups(HashMap<String, TemperatureRollup> countries,
+                                HashMap<String, TemperatureRollup> regions) {
+    }
+
+    /**
+     * Finds the block holding a reading index
+     * @param index     a valid reading index
+     * @return position of the block containing the reading
+     */
+    int blockOf(int index) {
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Builds the reading at a given index
+     * @param index     a valid reading index
+     * @return the reading
+     */
+    WeatherReading reading(int index) {
+        int blockIndex = blockOf(index);
+        return blocks[blockIndex].reading(index - blockStarts[blockIndex]);
+    }
+
+    /**
+     * Makes a view over a range of readings, one run per block it touches
+     * @param index     index of the first reading
+     * @param count     number of readings
+     * @return the readings in index order
+     */
+    ReadingView readings(int index, int count) {
+        int end = index + count;
+        int firstBlock = blockOf(index);
+        int runs = blockOf(end - 1) - firstBlock + 1;
+        CityBlock[] runBlocks = new CityBlock[runs];
+        int[] firstRows = new int[runs];
+        int[] endRows = new int[runs];
+        for (int run = 0; run < runs; run++) {
+            int i = firstBlock + run;
+            runBlocks[run] = blocks[i];
+            firstRows[run] = Math.max(index - blockStarts[i], 0);
+            endRows[run] = Math.min(end - blockStarts[i], blocks[i].size);
+        }
+        return new ReadingView(runBlocks, firstRows, endRows, runs);
+    }
+
+    /**
+     * Makes a view over the readings of one calendar day inside a range.  Rows
+     * covered by a block's calendar index are read through the index, so only
+     * matching rows are touched and nothing is copied; rows appended since the
+     * index was built are scanned by the column kernels.
+     * @param index     index of the first reading of the range
+     * @param count     number of readings in the range
+     * @param month     month to match
+     * @param day       day to match
+     * @return matching readings in index order
+     */
+    ReadingView readings(int index, int count, int month, int day) {
+        TemperatureKernels kernels = TemperatureKernels.get();
+        int slot = CalendarIndex.slot(month, day);
+        int end = index + count;
+        int firstBlock = blockOf(index);
+        int maxRuns = 2 * (blockOf(end - 1) - firstBlock + 1);
+        CityBlock[] runBlocks = new CityBlock[maxRuns];
+        int[][] rowMaps = new int[maxRuns][];
+        int[] firstRows = new int[maxRuns];
+        int[] endRows = new int[maxRuns];
+        int runs = 0;
+        for (int i = firstBlock; blockStarts[i] < end; i++) {
+            CityBlock block = blocks[i];
+            CalendarIndex calendar = block.calendar;
+            int from = Math.max(index - blockStarts[i], 0);
+            int to = Math.min(end - blockStarts[i], block.size);
+            int indexed = Math.min(to, calendar.rowCount());
+            if (from < indexed) {
+                int start = calendar.start(slot, from);
+                int stop = calendar.end(slot, indexed);
+                if (start < stop) {
+                    runBlocks[runs] = block;
+                    rowMaps[runs] = calendar.rows();
+                    firstRows[runs] = start;
+                    endRows[runs] = stop;
+                    runs++;
+                }
+            }
+            if (indexed < to) {
+                int tailFrom = Math.max(from, indexed);
+                int matches = kernels.countMatches(block.months, block.days, tailFrom, to, month, day);
+                if (matches > 0) {
+                    int[] tail = new int[matches];
+                    kernels.filter(block.months, block.days, tailFrom, to, month, day, tail, 0);
+                    runBlocks[runs] = block;
+                    rowMaps[runs] = tail;
+                    firstRows[runs] = 0;
+                    endRows[runs] = matches;
+                    runs++;
+                }
+            }
+        }
+        return new ReadingView(runBlocks, rowMaps, firstRows, endRows, runs);
+    }
+
+    /**
+     * Finds the readings for a location between two dates.  The matching cities are
+     * found by binary search in location order when a country is given, and each
+     * city's readings by binary search on its date order, so the result is a view
+     * over a run of rows per city rather than a copy.
+     * @param region    region to match, or null for any
+     * @param country   country to match, or null for any
+     * @param state     state to match, or null for any
+     * @param city      city to match, or null for any
+     * @param fromKey   packed first date to include
+     * @param toKey     packed last date to include
+     * @return matching readings in country, state, city and date order
+     */
+    ReadingView readings(String region, String country, String state, String city,
+                         int fromKey, int toKey) {
+        int first = country == null ? 0 : cityIndex.first(country, state);
+        int end = country == null ? cityIndex.size() : cityIndex.end(country, state);
+        CityBlock[] runBlocks = new CityBlock[end - first];
+        int[] firstRows = new int[end - first];
+        int[] endRows = new int[end - first];
+        int runs = 0;
+        for (int id = first; id < end; id++) {
+            CityBlock block = blocks[cityIndex.blockAt(id)];
+            if ((region == null || block.region.equals(region))
+                    && (country == null || block.country.equals(country))
+                    && (state == null || block.state.equals(state))
+                    && (city == null || block.city.equals(city))) {
+                int from = block.firstRowFrom(fromKey);
+                int to = toKey == Integer.MAX_VALUE ? block.size : block.firstRowFrom(toKey + 1);
+                if (from < to) {
+                    runBlocks[runs] = block;
+                    firstRows[runs] = from;
+                    endRows[runs] = to;
+                    runs++;
+                }
+            }
+        }
+        return new ReadingView(runBlocks, firstRows, endRows, runs);
+    }
+
+    /**
+     * Estimates the heap held by the dataset
+     * @return estimated size in bytes
+     */
+    long estimateHeapBytes() {
+        long bytes = 16 + ((16 + 4L * blocks.length + 7) & ~7L) + ((16 + 4L * blockStarts.length + 7) & ~7L);
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CityBlock block : blocks) {
+            bytes += block.estimateHeapBytes();
+            strings.add(block.region);
+            strings.add(block.country);
+            strings.add(block.state);
+            strings.add(block.city);
+        }
+        for (String value : strings) {
+            bytes += CityBlock.stringBytes(value);
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects readings row by row and groups them by location, with one instance
+     * of each location string shared by every block
+     */
+    static final class Builder implements WeatherCsvLoader.RowSink {
+
+        private final ArrayList<CityBlock> blocks = new ArrayList<>();
+        private final HashMap<String, CityBlock> blocksByKey = new HashMap<>();
+
+        /**
+         * One instance of each location string, shared by every block that uses it
+         */
+        private final HashMap<String, String> strings = new HashMap<>();
+        private CityBlock last;
+
+        /**
+         * Creates an empty builder
+         */
+        Builder() {
+        }
+
+        /**
+         * Creates an empty builder that reuses the location strings of existing blocks
+         * @param known     blocks whose strings new blocks should share
+         */
+        Builder(CityBlock[] known) {
+            for (CityBlock block : known) {
+                intern(block.region);
+                intern(block.country);
+                intern(block.state);
+                intern(block.city);
+            }
+        }
+
+        /**
+         * Adds one reading to the block for its location
+         * @param region    region of the reading
+         * @param country   country of the reading
+         * @param state     state of the reading
+         * @param city      city of the reading
+         * @param month     month of the reading
+         * @param day       day of the reading
+         * @param year      year of the reading
+         * @param avgTemp   average temperature of the reading
+         */
+        void add(String region, String country, String state, String city,
+                 int month, int day, int year, double avgTemp) {
+            if (last == null || !last.isLocation(country, state, city)) {
+                last = block(region, country, state, city);
+            }
+            last.add(month, day, year, avgTemp);
+        }
+
+        @Override
+        public void location(String region, String country, String state, String city) {
+            last = block(region, country, state, city);
+        }
+
+        @Override
+        public void add(int month, int day, int year, double avgTemp) {
+            last.add(month, day, year, avgTemp);
+        }
+
+        /**
+         * Finds or creates the block for a location, which keeps the region it was
+         * created with even when later rows give another one
+         * @param region    region of the location
+         * @param country   country of the location
+         * @param state     state of the location
+         * @param city      city of the location
+         * @return the block for the location
+         */
+        CityBlock block(String region, String country, String state, String city) {
+            String key = CityBlock.locationKey(country, state, city);
+            CityBlock block = blocksByKey.get(key);
+            if (block == null) {
+                block = new CityBlock(intern(region), intern(country), intern(state), intern(city));
+                blocksByKey.put(key, block);
+                blocks.add(block);
+            }
+            return block;
+        }
+
+        private String intern(String value) {
+            String canonical = strings.putIfAbsent(value, value);
+            return canonical == null ? value : canonical;
+        }
+
+        /**
+         * Appends the blocks of another builder, keeping their order
+         * @param other     builder whose readings come after this builder's readings
+         */
+        void addAll(Builder other) {
+            for (CityBlock block : other.blocks) {
+                last = block(block.region, block.country, block.state, block.city);
+                last.addAll(block);
+            }
+        }
+
+        /**
+         * Finishes loading and creates the dataset
+         * @return the dataset holding every added reading
+         */
+        WeatherDataset build() {
+            CityBlock[] finished = blocks.toArray(new CityBlock[0]);
+            for (CityBlock block : finished) {
+                block.trim();
+            }
+            return new WeatherDataset(finished);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes query results as JSON straight to a Writer, so large results are never
+ * held as one string.  Numbers that aren't finite are written as null.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class WeatherJson {
+
+    private WeatherJson() {
+    }
+
+    /**
+     * Writes a reading as an object with one field per record component
+     * @param out       where to write
+     * @param reading   the reading
+     * @throws IOException if writing fails
+     */
+    static void reading(Writer out, WeatherReading reading) throws IOException {
+        out.write("{\"region\":");
+        string(out, reading.region());
+        out.write(",\"country\":");
+        string(out, reading.country());
+        out.write(",\"state\":");
+        string(out, reading.state());
+        out.write(",\"city\":");
+        string(out, reading.city());
+        out.write(",\"month\":");
+        out.write(Integer.toString(reading.month()));
+        out.write(",\"day\":");
+        out.write(Integer.toString(reading.day()));
+        out.write(",\"year\":");
+        out.write(Integer.toString(reading.year()));
+        out.write(",\"avgTemp\":");
+        number(out, reading.avgTemp());
+        out.write('}');
+    }
+
+    /**
+     * Writes city list stats as an object, or null
+     * @param out       where to write
+     * @param stats     the stats, or null
+     * @throws IOException if writing fails
+     */
+    static void stats(Writer out, CityListStats stats) throws IOException {
+        if (stats == null) {
+            out.write("null");
+            return;
+        }
+        out.write("{\"startingIndex\":");
+        out.write(Integer.toString(stats.startingIndex()));
+        out.write(",\"count\":");
+        out.write(Integer.toString(stats.count()));
+        out.write(",\"years\":[");
+        for (int i = 0; i < stats.yearCount(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(Integer.toString(stats.year(i)));
+        }
+        out.write("]}");
+    }
+
+    /**
+     * Writes an object with a single field
+     * @param out       where to write
+     * @param name      name of the field
+     * @param value     a number
+     * @throws IOException if writing fails
+     */
+    static void field(Writer out, String name, double value) throws IOException {
+        out.write('{');
+        string(out, name);
+        out.write(':');
+        number(out, value);
+        out.write('}');
+    }
+
+    /**
+     * Writes an error object
+     * @param out       where to write
+     * @param message   the error message
+     * @throws IOException if writing fails
+     */
+    static void error(Writer out, String message) throws IOException {
+        out.write("{\"error\":");
+        string(out, message == null ? "" : message);
+        out.write('}');
+    }
+
+    /**
+     * Writes a number, as an integer when it is one
+     * @param out       where to write
+     * @param value     the number
+     * @throws IOException if writing fails
+     */
+    static void number(Writer out, double value) throws IOException {
+        if (!Double.isFinite(value)) {
+            out.write("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.write(Long.toString((long) value));
+        } else {
+            out.write(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a quoted string, escaping quotes, backslashes and control characters
+     * @param out       where to write
+     * @param value     the string
+     * @throws IOException if writing fails
+     */
+    static void string(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
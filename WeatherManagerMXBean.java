@@ -0,0 +1,23 @@
+/**
+ * JMX view of a GlobalWeatherManager's data and load, registered by
+ * WeatherMetrics.registerMBeans.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public interface WeatherManagerMXBean {
+
+    int getReadingCount();
+
+    long getDatasetHeapBytes();
+
+    long getLoadElapsedNanos();
+
+    long getLoadReadNanos();
+
+    long getLoadParseNanos();
+
+    long getLoadIndexNanos();
+
+    double getLoadRowsPerSecond();
+}
@@ -0,0 +1,180 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Metrics listener that keeps a call count and latency histogram for each query
+ * method, and the load times, and can publish them as JMX MBeans:
+ * <pre>
+ * GlobalWeatherManager:type=Manager,name=&lt;name&gt;
+ * GlobalWeatherManager:type=Query,name=&lt;name&gt;,method=&lt;QueryMethod&gt;
+ * </pre>
+ * Use it with GlobalWeatherManager.setMetricsListener.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public final class WeatherMetrics implements MetricsListener {
+
+    private static final String DOMAIN = "GlobalWeatherManager";
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[QueryMethod.values().length];
+
+    private volatile LoadReport loadReport;
+
+    /**
+     * Creates metrics with nothing recorded
+     */
+    public WeatherMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void loaded(LoadReport report) {
+        loadReport = report;
+    }
+
+    @Override
+    public void called(QueryMethod method, long nanos) {
+        latencies[method.ordinal()].record(nanos);
+    }
+
+    /**
+     * Retrieves the load times last reported
+     * @return the load report, or null if none has been reported
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    /**
+     * Retrieves the latencies of one query method
+     * @param method    the method
+     * @return the live histogram of the method's calls
+     */
+    public LatencyHistogram getLatencies(QueryMethod method) {
+        return latencies[method.ordinal()];
+    }
+
+    /**
+     * Registers MBeans for a manager and these metrics with the platform MBean server
+     * @param manager   the manager whose data size and reading count to publish
+     * @param name      name that tells this manager's MBeans apart from others
+     * @throws JMException if the names are not valid or are already registered
+     */
+    public void registerMBeans(GlobalWeatherManager manager, String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new ManagerBean(manager), managerName(name));
+        for (QueryMethod method : QueryMethod.values()) {
+            server.registerMBean(new QueryBean(getLatencies(method)), queryName(name, method));
+        }
+    }
+
+    /**
+     * Removes the MBeans registered under a name
+     * @param name      the name passed to registerMBeans
+     * @throws JMException if the names are not valid or are not registered
+     */
+    public static void unregisterMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(managerName(name));
+        for (QueryMethod method : QueryMethod.values()) {
+            server.unregisterMBean(queryName(name, method));
+        }
+    }
+
+    static ObjectName managerName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Manager,name=" + ObjectName.quote(name));
+    }
+
+    static ObjectName queryName(String name, QueryMethod method) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Query,name=" + ObjectName.quote(name)
+                + ",method=" + method);
+    }
+
+    private static final class ManagerBean implements WeatherManagerMXBean {
+
+        private final GlobalWeatherManager manager;
+
+        ManagerBean(GlobalWeatherManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public int getReadingCount() {
+            return manager.getReadingCount();
+        }
+
+        @Override
+        public long getDatasetHeapBytes() {
+            return manager.getDatasetHeapBytes();
+        }
+
+        @Override
+        public long getLoadElapsedNanos() {
+            return manager.getLoadReport().elapsedNanos();
+        }
+
+        @Override
+        public long getLoadReadNanos() {
+            return manager.getLoadReport().readNanos();
+        }
+
+        @Override
+        public long getLoadParseNanos() {
+            return manager.getLoadReport().parseNanos();
+        }
+
+        @Override
+        public long getLoadIndexNanos() {
+            return manager.getLoadReport().indexNanos();
+        }
+
+        @Override
+        public double getLoadRowsPerSecond() {
+            return manager.getLoadReport().rowsPerSecond();
+        }
+    }
+
+    private static final class QueryBean implements QueryMetricsMXBean {
+
+        private final LatencyHistogram latencies;
+
+        QueryBean(LatencyHistogram latencies) {
+            this.latencies = latencies;
+        }
+
+        @Override
+        public long getCount() {
+            return latencies.count();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return latencies.mean();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return latencies.percentile(50.0);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return latencies.percentile(99.0);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return latencies.percentile(99.9);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return latencies.max();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small HTTP server answering GlobalWeatherManager queries as JSON, built on the
+ * JDK's com.sun.net.httpserver.  Every query is a GET:
+ * <pre>
+ * /readingCount
+ * /reading?index=I
+ * /readings?index=I&amp;count=N
+ * /readings?index=I&amp;count=N&amp;month=M&amp;day=D
+ * /cityListStats?country=C&amp;state=S&amp;city=T
+ * /slope?index=I&amp;count=N&amp;month=M&amp;day=D
+ * </pre>
+ * A POST to /batch runs several queries in one request.  Its body holds one query
+ * per line, written as above, and the response is a JSON array with one result per
+ * line in order; a query that fails gives an {"error": ...} object in its place,
+ * and an unknown city gives null.
+ * <p>
+ * Responses are sent chunked and written through a small buffer straight from a
+ * reading view, so a range of millions of readings is streamed with flat memory.
+ * Bad parameters give 400, an unknown city 404, unknown paths 404, and any other
+ * failure 500, each with a JSON error body.
+ * <p>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21 and
+ * later); otherwise on a fixed pool of platform threads, several per core, since
+ * requests block on socket writes.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public final class WeatherQueryServer {
+
+    private static final int WRITE_BUFFER_CHARS = 1 << 14;
+
+    static {
+        // The JDK server writes headers and body separately, and with Nagle's algorithm
+        // on, the body then waits for the client's delayed ACK, about 40ms a request.
+        // The setting is read once, when the first HttpServer in the JVM is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Result of a city list stats query for an unknown city, a 404 on its own and
+     * null in a batch
+     */
+    private static final Result CITY_NOT_FOUND = out -> out.write("null");
+
+    private final GlobalWeatherManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server for a manager, not yet accepting requests
+     * @param manager   the manager to query; must not be null
+     * @param address   address to listen on; port 0 picks a free port
+     * @throws IOException if the address can't be bound
+     * @throws IllegalArgumentException if manager is null
+     */
+    public WeatherQueryServer(GlobalWeatherManager manager, InetSocketAddress address)
+            throws IOException {
+        if (manager == null) {
+            throw new IllegalArgumentException("Manager can't be null.");
+        }
+        this.manager = manager;
+        server = HttpServer.create(address, 0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and ends the request threads
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Retrieves the port the server listens on
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the JVM has one,
+     * or else a fixed pool of daemon threads
+     * @return the executor
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()),
+                    task -> {
+                        Thread thread = new Thread(task, "weather-query-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/batch")) {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    sendError(exchange, 405, "Batches must be POSTed.");
+                    return;
+                }
+                List<String> queries = new ArrayList<>();
+                try (BufferedReader body = new BufferedReader(new InputStreamReader(
+                        exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                    for (String line = body.readLine(); line != null; line = body.readLine()) {
+                        if (!line.isBlank()) {
+                            queries.add(line.strip());
+                        }
+                    }
+                }
+                send(exchange, 200, out -> {
+                    out.write('[');
+                    for (int i = 0; i < queries.size(); i++) {
+                        if (i > 0) {
+                            out.write(",\n");
+                        }
+                        Result result;
+                        try {
+                            URI uri = URI.create(queries.get(i));
+                            result = query(uri.getPath(), parameters(uri.getRawQuery()));
+                            if (result == null) {
+                                result = error("Unknown query: " + uri.getPath());
+                            }
+                        } catch (RuntimeException e) {
+                            result = error(e.getMessage());
+                        }
+                        result.write(out);
+                    }
+                    out.write(']');
+                });
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Queries must use GET.");
+                return;
+            }
+            Result result;
+            try {
+                result = query(path, parameters(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, e.getMessage());
+                return;
+            }
+            if (result == null) {
+                sendError(exchange, 404, "Unknown query: " + path);
+                return;
+            }
+            if (result == CITY_NOT_FOUND) {
+                sendError(exchange, 404, "City not found.");
+                return;
+            }
+            send(exchange, 200, result);
+        }
+    }
+
+    /**
+     * Runs one query, checking its parameters before anything is written
+     * @param path          path of the query
+     * @param parameters    decoded query parameters
+     * @return writes the query's result, CITY_NOT_FOUND for an unknown city,
+     * or null for an unknown path
+     * @throws IllegalArgumentException if a parameter is missing or not valid
+     * @throws IndexOutOfBoundsException if an index or count is not in range
+     */
+    private Result query(String path, Map<String, String> parameters) {
+        switch (path) {
+            case "/readingCount" -> {
+                int count = manager.getReadingCount();
+                return out -> WeatherJson.field(out, "readingCount", count);
+            }
+            case "/reading" -> {
+                WeatherReading reading = manager.getReading(intParameter(parameters, "index"));
+                return out -> WeatherJson.reading(out, reading);
+            }
+            case "/readings" -> {
+                int index = intParameter(parameters, "index");
+                int count = intParameter(parameters, "count");
+                List<WeatherReading> readings = parameters.containsKey("month")
+                        ? manager.getReadingsView(index, count, intParameter(parameters, "month"),
+                                intParameter(parameters, "day"))
+                        : manager.getReadingsView(index, count);
+                return out -> {
+                    out.write('[');
+                    for (int i = 0; i < readings.size(); i++) {
+                        if (i > 0) {
+                            out.write(",\n");
+                        }
+                        WeatherJson.reading(out, readings.get(i));
+                    }
+                    out.write(']');
+                };
+            }
+            case "/cityListStats" -> {
+                CityListStats stats = manager.getCityListStats(stringParameter(parameters, "country"),
+                        stringParameter(parameters, "state"), stringParameter(parameters, "city"));
+                return stats == null ? CITY_NOT_FOUND : out -> WeatherJson.stats(out, stats);
+            }
+            case "/slope" -> {
+                double slope = manager.getTemperatureLinearRegressionSlope(
+                        intParameter(parameters, "index"), intParameter(parameters, "count"),
+                        intParameter(parameters, "month"), intParameter(parameters, "day"));
+                return out -> WeatherJson.field(out, "slope", slope);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static Result error(String message) {
+        return out -> WeatherJson.error(out, message);
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        HashMap<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String stringParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name + ".");
+        }
+        return value;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name) {
+        String value = stringParameter(parameters, name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number.");
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter body = new StringWriter();
+        WeatherJson.error(body, message);
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void send(HttpExchange exchange, int status, Result result) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8), WRITE_BUFFER_CHARS)) {
+            result.write(out);
+        }
+    }
+
+    /**
+     * Writes the JSON of a query's result
+     */
+    @FunctionalInterface
+    private interface Result {
+        void write(Writer out) throws IOException;
+    }
+}
@@ -26,11 +26,11 @@ public record WeatherReading(String region, String country, String state, String
      */
     @Override
     public int compareTo(WeatherReading other){
-        int result = this.country.compareTo(other.country);
+        int result = compareText(this.country, other.country);
         if(result==0) {
-            result = this.state.compareTo(other.state);
+            result = compareText(this.state, other.state);
             if (result == 0) {
-                result = this.city.compareTo(other.city);
+                result = compareText(this.city, other.city);
                 if (result == 0) {
                     result = Integer.compare(this.year, other.year);
                     if (result == 0) {
@@ -76,13 +76,25 @@ public record WeatherReading(String region, String country, String state, String
      *       less or equal to other Weather Reading
      */
     public int compareCountryStateCity (WeatherReading other){
-        int result=this.country.compareTo(other.country);
+        int result=compareText(this.country, other.country);
         if(result==0) {
-            result = this.state.compareTo(other.state);
+            result = compareText(this.state, other.state);
             if (result == 0) {
-                result = this.city.compareTo(other.city);
+                result = compareText(this.city, other.city);
             }
         }
         return result;
     }
+
+    /**
+     * Compares two location strings.  Readings from the manager share one instance
+     * of each location string, so equal locations are found without reading characters.
+     *
+     * @param text      the first string
+     * @param other     the second string
+     * @return the result of text.compareTo(other)
+     */
+    private static int compareText(String text, String other) {
+        return text == other ? 0 : text.compareTo(other);
+    }
 }
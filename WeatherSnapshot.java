@@ -0,0 +1,329 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a WeatherDataset, so it can be reopened without parsing the csv.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * header      magic "GWMS", version, source path, source size, source last modified,
+ *             block count, reading count
+ * dictionary  for each block: region, country, state, city, reading count
+ * columns     for each block: months, days, years (int), avgTemps (double)
+ * indexes     for each block: calendar index, temperature rollup, and the valid
+ *             row and valid day bitmaps of its missing data index
+ * trailer     CRC32 of every byte before it
+ * </pre>
+ * Strings are written as a length followed by UTF-8 bytes.  Blocks are written
+ * sealed, rows in date order with their indexes, so opening a snapshot copies
+ * the arrays back and neither sorts nor indexes anything.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class WeatherSnapshot {
+
+    /**
+     * "GWMS" in ASCII
+     */
+    private static final int MAGIC = 0x47574D53;
+
+    private static final int VERSION = 2;
+
+    /**
+     * Identifies the csv a dataset was loaded from, so a changed file can be spotted.
+     * For a directory of shards the size is the total of its csv files and the
+     * last modified time the latest of theirs and the directory's own.
+     * @param path          absolute path of the csv or directory, or "" if the dataset
+     *                      came from a list of files and has none
+     * @param size          size of the csv in bytes
+     * @param lastModified  last modified time of the csv in milliseconds
+     */
+    record Source(String path, long size, long lastModified) {
+
+        /**
+         * Source of a dataset loaded from a list of files, which has no one path
+         */
+        static final Source NONE = new Source("", 0, 0);
+
+        /**
+         * Captures the current state of a file
+         * @param file  the csv file, or a directory of csv files
+         * @return the file's path, size and last modified time
+         */
+        static Source of(File file) {
+            long size = file.length();
+            long lastModified = file.lastModified();
+            File[] shards = file.listFiles(
+                    shard -> shard.isFile() && shard.getName().endsWith(".csv"));
+            if (shards != null) {
+                size = 0;
+                for (File shard : shards) {
+                    size += shard.length();
+                    lastModified = Math.max(lastModified, shard.lastModified());
+                }
+            }
+            return new Source(file.getAbsolutePath(), size, lastModified);
+        }
+
+        /**
+         * Finds the recorded csv
+         * @return the csv or directory, or null if none was recorded
+         */
+        File file() {
+            return path.isEmpty() ? null : new File(path);
+        }
+
+        /**
+         * Checks if the file still looks the same as when it was captured.  Only the
+         * size and last modified time are compared, so the csv is never read; an
+         * edit that keeps the size and restores the old time, or one made within the
+         * file system's timestamp resolution, is not noticed.
+         * @param file  the csv file, or a directory of csv files
+         * @return true if the size and last modified time haven't changed
+         */
+        boolean matches(File file) {
+            Source current = of(file);
+            return current.size == size && current.lastModified == lastModified;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final Source source;
+    private final int blockCount;
+    private final int readingCount;
+
+    private WeatherSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a weather snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        source = new Source(readString(buffer), buffer.getLong(), buffer.getLong());
+        blockCount = buffer.getInt();
+        readingCount = buffer.getInt();
+    }
+
+    /**
+     * Memory maps a snapshot file and reads its header
+     * @param path  the snapshot file
+     * @return the opened snapshot
+     * @throws IOException if the file can't be read or is not a snapshot
+     */
+    static WeatherSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to map");
+            }
+            return new WeatherSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } catch (RuntimeException e) {
+            throw new IOException("Snapshot header is corrupt", e);
+        }
+    }
+
+    /**
+     * Retrieves the csv the snapshot was made from
+     * @return the source path, size and last modified time
+     */
+    Source source() {
+        return source;
+    }
+
+    /**
+     * Checks the stored checksum against the snapshot's contents
+     * @return true if the snapshot has not been damaged
+     */
+    boolean isIntact() {
+        int end = buffer.limit() - Long.BYTES;
+        if (end < buffer.position()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        return crc.getValue() == buffer.getLong(end);
+    }
+
+    /**
+     * Reads the dictionary, columns and indexes into a dataset of sealed blocks
+     * @param timer marks the end of the parse and index phases
+     * @return the dataset held by the snapshot
+     * @throws IOException if the contents don't match the header
+     */
+    WeatherDataset dataset(LoadTimer timer) throws IOException {
+        try {
+            ByteBuffer in = buffer.duplicate();
+            CityBlock[] blocks = new CityBlock[blockCount];
+            int[] sizes = new int[blockCount];
+            String[][] locations = new String[blockCount][];
+            HashMap<String, String> strings = new HashMap<>();
+            for (int i = 0; i < blockCount; i++) {
+                locations[i] = new String[4];
+                for (int field = 0; field < 4; field++) {
+                    String value = readString(in);
+                    String canonical = strings.putIfAbsent(value, value);
+                    locations[i][field] = canonical == null ? value : canonical;
+                }
+                sizes[i] = in.getInt();
+            }
+            int total = 0;
+            for (int i = 0; i < blockCount; i++) {
+                int[] months = readInts(in, sizes[i]);
+                int[] days = readInts(in, sizes[i]);
+                int[] years = readInts(in, sizes[i]);
+                double[] avgTemps = readDoubles(in, sizes[i]);
+                blocks[i] = new CityBlock(locations[i][0], locations[i][1], locations[i][2],
+                        locations[i][3], months, days, years, avgTemps);
+                total += sizes[i];
+            }
+            if (total != readingCount) {
+                throw new IOException("Snapshot reading count does not match its columns");
+            }
+            timer.parsed();
+            for (CityBlock block : blocks) {
+                CalendarIndex calendar = CalendarIndex.read(in);
+                if (calendar.rowCount() > block.size) {
+                    throw new IOException("Snapshot calendar index does not match its columns");
+                }
+                block.seal(calendar, TemperatureRollup.read(in), MissingDataIndex.read(in));
+            }
+            WeatherDataset dataset = WeatherDataset.ofSealed(blocks);
+            timer.indexed();
+            return dataset;
+        } catch (RuntimeException e) {
+            throw new IOException("Snapshot contents are corrupt", e);
+        }
+    }
+
+    /**
+     * Writes a dataset to a snapshot file, replacing any existing file only once
+     * the new one is complete
+     * @param dataset   the readings to write
+     * @param source    the csv the readings were loaded from
+     * @param path      the snapshot file
+     * @throws IOException if the file can't be written
+     */
+    static void write(WeatherDataset dataset, Source source, Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                         new BufferedOutputStream(file, 1 << 16), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, source.path());
+                out.writeLong(source.size());
+                out.writeLong(source.lastModified());
+                out.writeInt(dataset.blockCount());
+                out.writeInt(dataset.size());
+                for (int i = 0; i < dataset.blockCount(); i++) {
+                    CityBlock block = dataset.block(i);
+                    writeString(out, block.region);
+                    writeString(out, block.country);
+                    writeString(out, block.state);
+                    writeString(out, block.city);
+                    out.writeInt(block.size);
+                }
+                for (int i = 0; i < dataset.blockCount(); i++) {
+                    CityBlock block = dataset.block(i);
+                    writeInts(out, block.months, block.size);
+                    writeInts(out, block.days, block.size);
+                    writeInts(out, block.years, block.size);
+                    writeDoubles(out, block.avgTemps, block.size);
+                }
+                for (int i = 0; i < dataset.blockCount(); i++) {
+                    CityBlock block = dataset.block(i);
+                    block.calendar.write(out);
+                    block.rollup.write(out);
+                    block.missingData().write(out);
+                }
+                out.writeLong(crc.getValue());
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the first values of an array, without their count
+     * @param out       the snapshot stream
+     * @param values    the values
+     * @param length    how many of them to write
+     * @throws IOException if they can't be written
+     */
+    static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Writes the first values of an array, without their count
+     * @param out       the snapshot stream
+     * @param values    the values
+     * @param length    how many of them to write
+     * @throws IOException if they can't be written
+     */
+    static void writeDoubles(DataOutputStream out, double[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    /**
+     * Reads values written by writeInts in one bulk copy
+     * @param in        the snapshot, positioned at the values
+     * @param length    how many values to read
+     * @return the values
+     */
+    static int[] readInts(ByteBuffer in, int length) {
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + Integer.BYTES * length);
+        return values;
+    }
+
+    /**
+     * Reads values written by writeDoubles in one bulk copy
+     * @param in        the snapshot, positioned at the values
+     * @param length    how many values to read
+     * @return the values
+     */
+    static double[] readDoubles(ByteBuffer in, int length) {
+        double[] values = new double[length];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + Double.BYTES * length);
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a full anomaly scan of the 2.9M-row file, one pass per city with the
+ * cities spread over the common pool.  Run with -p window=5,10,20 to see that the
+ * cost doesn't grow with the window.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AnomalyBenchmark {
+
+    @Param({"10"})
+    public int window;
+
+    @Param({"3.0"})
+    public double threshold;
+
+    private GlobalWeatherManager manager;
+
+    @Setup
+    public void setUp() {
+        manager = WeatherData.load("real");
+    }
+
+    @Benchmark
+    public List<TemperatureAnomaly> getAnomalies() {
+        return manager.getAnomalies(window, threshold);
+    }
+}
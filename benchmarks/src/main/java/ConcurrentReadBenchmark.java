@@ -0,0 +1,90 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a mix of reads against one shared GlobalWeatherManager with a growing number
+ * of threads.  Total throughput should rise with the thread count, since reads take no locks.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConcurrentReadBenchmark {
+
+    @Param({"real"})
+    public String dataset;
+
+    private GlobalWeatherManager manager;
+    private String[][] cities;
+
+    /**
+     * Random source for each thread
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        manager = WeatherData.load(dataset);
+        cities = WeatherData.cities(manager);
+    }
+
+    private double mixedRead(Queries queries) {
+        String[] city = cities[queries.random.nextInt(cities.length)];
+        CityListStats stats = manager.getCityListStats(city[0], city[1], city[2]);
+        WeatherReading[] readings = manager.getReadings(stats.startingIndex(), stats.count(),
+                queries.random.nextInt(12) + 1, queries.random.nextInt(28) + 1);
+        return manager.getTemperatureLinearRegressionSlope(readings)
+                + manager.getReading(queries.random.nextInt(manager.getReadingCount())).avgTemp();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double threads1(Queries queries) {
+        return mixedRead(queries);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public double threads2(Queries queries) {
+        return mixedRead(queries);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public double threads4(Queries queries) {
+        return mixedRead(queries);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public double threads8(Queries queries) {
+        return mixedRead(queries);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public double threads16(Queries queries) {
+        return mixedRead(queries);
+    }
+}
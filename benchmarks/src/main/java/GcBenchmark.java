@@ -0,0 +1,62 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares garbage collection with the readings on the heap and off it.
+ * fullGc times a full collection with the whole dataset live, and queryChurn makes
+ * short-lived garbage the way a busy server does; run through BenchmarkMain, the gc
+ * profiler reports the collection count and time of each.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-XX:MaxDirectMemorySize=16g"})
+public class GcBenchmark {
+
+    @Param({"heap", "off-heap"})
+    public String storage;
+
+    @Param({"synthetic-10"})
+    public String dataset;
+
+    private GlobalWeatherManagerInterface manager;
+
+    @Setup
+    public void setUp() {
+        try {
+            manager = storage.equals("heap") ? new GlobalWeatherManager(WeatherData.csv(dataset))
+                    : new OffHeapWeatherManager(WeatherData.csv(dataset));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public WeatherReading[] queryChurn(LookupBenchmark.Queries queries) {
+        return manager.getReadings(queries.next(manager.getReadingCount() - 1000), 1000);
+    }
+}
@@ -0,0 +1,45 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a GlobalWeatherManager from a csv file.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoadBenchmark {
+
+    @Param({"real", "synthetic-10"})
+    public String dataset;
+
+    private File csv;
+
+    @Setup
+    public void setUp() {
+        csv = WeatherData.csv(dataset);
+    }
+
+    @Benchmark
+    public GlobalWeatherManager constructor() throws FileNotFoundException {
+        return new GlobalWeatherManager(csv);
+    }
+}
@@ -0,0 +1,127 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the query methods of GlobalWeatherManager.
+ * Runs in throughput and sample time modes, so the results include latency percentiles.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LookupBenchmark {
+
+    @Param({"real", "synthetic-10"})
+    public String dataset;
+
+    private GlobalWeatherManager manager;
+    private String[][] cities;
+    private CityListStats[] stats;
+    private WeatherReading[][] dayReadings;
+
+    /**
+     * Picks queries at random so the branch predictor and caches can't learn one answer
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        private final SplittableRandom random = new SplittableRandom(7);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        manager = WeatherData.load(dataset);
+        cities = WeatherData.cities(manager);
+        stats = new CityListStats[cities.length];
+        dayReadings = new WeatherReading[cities.length][];
+        for (int i = 0; i < cities.length; i++) {
+            stats[i] = manager.getCityListStats(cities[i][0], cities[i][1], cities[i][2]);
+            dayReadings[i] = manager.getReadings(stats[i].startingIndex(), stats[i].count(), 7, 4);
+        }
+    }
+
+    @Benchmark
+    public WeatherReading getReading(Queries queries) {
+        return manager.getReading(queries.next(manager.getReadingCount()));
+    }
+
+    @Benchmark
+    public WeatherReading[] getReadings(Queries queries) {
+        return manager.getReadings(queries.next(manager.getReadingCount() - 100), 100);
+    }
+
+    @Benchmark
+    public WeatherReading[] getReadingsForDay(Queries queries) {
+        CityListStats city = stats[queries.next(stats.length)];
+        return manager.getReadings(city.startingIndex(), city.count(),
+                queries.next(12) + 1, queries.next(28) + 1);
+    }
+
+    @Benchmark
+    public WeatherReading getReadingsViewPage(Queries queries) {
+        List<WeatherReading> page = manager.getReadingsView(
+                queries.next(manager.getReadingCount() - 50_000), 50_000);
+        return page.get(queries.next(page.size()));
+    }
+
+    @Benchmark
+    public CityListStats getCityListStatsHit(Queries queries) {
+        String[] city = cities[queries.next(cities.length)];
+        return manager.getCityListStats(city[0], city[1], city[2]);
+    }
+
+    @Benchmark
+    public CityListStats getCityListStatsMiss(Queries queries) {
+        String[] city = cities[queries.next(cities.length)];
+        return manager.getCityListStats(city[0], city[1], "Atlantis");
+    }
+
+    @Benchmark
+    public CityCoverage getCityCoverage(Queries queries) {
+        String[] city = cities[queries.next(cities.length)];
+        return manager.getCityCoverage(city[0], city[1], city[2], 1995, 2019);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double temperatureStreamSum() {
+        return manager.temperatureStream().sum();
+    }
+
+    @Benchmark
+    public double getTemperatureLinearRegressionSlope(Queries queries) {
+        return manager.getTemperatureLinearRegressionSlope(dayReadings[queries.next(dayReadings.length)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void iterate(Blackhole blackhole) {
+        for (WeatherReading reading : manager) {
+            blackhole.consume(reading);
+        }
+    }
+}
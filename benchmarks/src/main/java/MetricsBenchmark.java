@@ -0,0 +1,60 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what timing query calls costs.  With metrics "off" the results should
+ * match LookupBenchmark within noise; "empty" sets a listener that does nothing,
+ * and "histogram" records every call in WeatherMetrics.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+public class MetricsBenchmark {
+
+    @Param({"off", "empty", "histogram"})
+    public String metrics;
+
+    private GlobalWeatherManager manager;
+    private String[][] cities;
+
+    @Setup
+    public void setUp() {
+        manager = WeatherData.load("real");
+        cities = WeatherData.cities(manager);
+        switch (metrics) {
+            case "off" -> manager.setMetricsListener(null);
+            case "empty" -> manager.setMetricsListener(new MetricsListener() {
+            });
+            case "histogram" -> manager.setMetricsListener(new WeatherMetrics());
+            default -> throw new IllegalArgumentException("Unknown metrics " + metrics);
+        }
+    }
+
+    @Benchmark
+    public WeatherReading getReading(LookupBenchmark.Queries queries) {
+        return manager.getReading(queries.next(manager.getReadingCount()));
+    }
+
+    @Benchmark
+    public CityListStats getCityListStats(LookupBenchmark.Queries queries) {
+        String[] city = cities[queries.next(cities.length)];
+        return manager.getCityListStats(city[0], city[1], city[2]);
+    }
+}
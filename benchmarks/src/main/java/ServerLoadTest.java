@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load tests WeatherQueryServer over loopback.  For each concurrency level
+ * (1, 2, 4, ... up to the first argument, 64 by default) that many clients send
+ * requests back to back for a number of seconds (the second argument, 10 by
+ * default), and the requests per second and p50/p99 latency are printed.  Each
+ * request is a single reading or a page of 100 readings, picked at random.
+ * Not a JMH benchmark, since JMH measures threads in one JVM rather than a server
+ * behind a socket; run it with
+ * <pre>
+ * java -cp benchmarks.jar ServerLoadTest [maxClients] [seconds]
+ * </pre>
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+public class ServerLoadTest {
+
+    private static final int PAGE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int maxClients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        GlobalWeatherManager manager = WeatherData.load(System.getProperty("dataset", "real"));
+        WeatherQueryServer server = new WeatherQueryServer(manager, new InetSocketAddress("localhost", 0));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newCachedThreadPool())
+                    .build();
+            String base = "http://localhost:" + server.getPort();
+            // warm up
+            run(client, base, manager.getReadingCount(), 1, seconds);
+            System.out.printf("%8s %12s %10s %10s%n", "clients", "requests/s", "p50 us", "p99 us");
+            for (int clients = 1; clients <= maxClients; clients *= 2) {
+                LatencyHistogram latencies = run(client, base, manager.getReadingCount(), clients, seconds);
+                System.out.printf("%8d %12.0f %10.1f %10.1f%n", clients,
+                        latencies.count() / (double) seconds,
+                        latencies.percentile(50.0) / 1e3, latencies.percentile(99.0) / 1e3);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends requests from a number of clients for a while
+     * @return latencies of every request, in nanoseconds
+     */
+    private static LatencyHistogram run(HttpClient client, String base, int readingCount,
+                                        int clients, long seconds) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LatencyHistogram latencies = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                long seed = c;
+                results.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    while (System.nanoTime() < end) {
+                        int index = random.nextInt(readingCount - PAGE);
+                        String query = random.nextBoolean() ? "/reading?index=" + index
+                                : "/readings?index=" + index + "&count=" + PAGE;
+                        long start = System.nanoTime();
+                        HttpResponse<byte[]> response = client.send(
+                                HttpRequest.newBuilder(URI.create(base + query)).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        latencies.record(System.nanoTime() - start);
+                        if (response.statusCode() != 200) {
+                            throw new IOException("Status " + response.statusCode() + " for " + query);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return latencies;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
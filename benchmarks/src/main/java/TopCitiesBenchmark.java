@@ -0,0 +1,92 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the 20 fastest-warming cities with getTopCities against the
+ * way it had to be done before: getCityListStats, getReadings and a regression
+ * for every city, then a sort of all of them.  getTopCitiesUncached asks for a
+ * different k each call, cycling through more values than the ranking cache
+ * holds, so every call is a miss; getTopCitiesCached repeats one query.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class TopCitiesBenchmark {
+
+    private static final int TOP = 20;
+
+    /**
+     * More distinct queries than the ranking cache holds
+     */
+    private static final int QUERIES = 128;
+
+    @Param({"real", "synthetic-10"})
+    public String dataset;
+
+    private GlobalWeatherManager manager;
+    private String[][] cities;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        manager = WeatherData.load(dataset);
+        cities = WeatherData.cities(manager);
+    }
+
+    @Benchmark
+    public List<double[]> perCitySort() {
+        List<double[]> slopes = new ArrayList<>();
+        for (int i = 0; i < cities.length; i++) {
+            CityListStats stats = manager.getCityListStats(cities[i][0], cities[i][1], cities[i][2]);
+            WeatherReading[] readings = manager.getReadings(stats.startingIndex(), stats.count());
+            int[] years = new int[readings.length];
+            double[] temps = new double[readings.length];
+            int count = 0;
+            for (WeatherReading reading : readings) {
+                if (reading.avgTemp() != -99.0) {
+                    years[count] = reading.year();
+                    temps[count] = reading.avgTemp();
+                    count++;
+                }
+            }
+            if (count >= 2) {
+                slopes.add(new double[]{manager.calcLinearRegressionSlope(years, temps, 0, count), i});
+            }
+        }
+        slopes.sort(Comparator.comparingDouble((double[] slope) -> slope[0]).reversed());
+        return slopes.subList(0, Math.min(TOP, slopes.size()));
+    }
+
+    @Benchmark
+    public List<CityRanking> getTopCitiesUncached() {
+        next = (next + 1) % QUERIES;
+        return manager.getTopCities(RankingMeasure.FASTEST_WARMING, TOP + next, null, null,
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<CityRanking> getTopCitiesCached() {
+        return manager.getTopCities(RankingMeasure.FASTEST_WARMING, TOP, null, null,
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,93 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the plain loop and SIMD column kernels on the same columns: regression
+ * sums with and without skipping -99.0, and counting and finding the rows of one
+ * calendar day.  The columns are the years, temperatures, months and days of a
+ * city from the real dataset, repeated to the requested length with one reading
+ * in ten missing.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g", "--add-modules", "jdk.incubator.vector"})
+public class VectorBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private TemperatureKernels kernel;
+    private int[] years;
+    private double[] temps;
+    private int[] months;
+    private int[] days;
+    private int[] matches;
+
+    @Setup
+    public void setUp() {
+        kernel = kernels.equals("scalar") ? TemperatureKernels.scalar() : TemperatureKernels.vector();
+        if (kernel == null) {
+            throw new IllegalStateException("jdk.incubator.vector is not loaded");
+        }
+        GlobalWeatherManager manager = WeatherData.load("real");
+        CityListStats city = manager.getCityListStats("US", "Arizona", "Phoenix");
+        SplittableRandom random = new SplittableRandom(17);
+        years = new int[rows];
+        temps = new double[rows];
+        months = new int[rows];
+        days = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            WeatherReading reading = manager.getReading(city.startingIndex() + i % city.count());
+            years[i] = reading.year();
+            temps[i] = random.nextInt(10) == 0 ? -99.0 : reading.avgTemp();
+            months[i] = reading.month();
+            days[i] = reading.day();
+        }
+        matches = new int[rows];
+    }
+
+    @Benchmark
+    public double regression() {
+        RegressionAccumulator accumulator = new RegressionAccumulator();
+        kernel.regression(years, temps, 0, rows, false, accumulator);
+        return accumulator.slope();
+    }
+
+    @Benchmark
+    public double regressionSkippingMissing() {
+        RegressionAccumulator accumulator = new RegressionAccumulator();
+        kernel.regression(years, temps, 0, rows, true, accumulator);
+        return accumulator.slope();
+    }
+
+    @Benchmark
+    public int countMatches() {
+        return kernel.countMatches(months, days, 0, rows, 7, 4);
+    }
+
+    @Benchmark
+    public int filter() {
+        return kernel.filter(months, days, 0, rows, 7, 4, matches, 0);
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Finds the csv files the benchmarks run against.
+ * "real" is city_temperature.csv, or the file named by the weather.csv system property.
+ * "synthetic-N" is a generated file with the same layout and N times as many readings,
+ * written once to the temp directory and reused by later runs.
+ *
+ * @author Vivek Vemulakonda
+ * @version 1.0
+ */
+final class WeatherData {
+
+    /**
+     * Cities in the real file
+     */
+    private static final int BASE_CITIES = 321;
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(1995, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2020, 5, 13);
+
+    private WeatherData() {
+    }
+
+    /**
+     * Finds or generates the csv for a dataset name
+     * @param dataset   "real" or "synthetic-N"
+     * @return the csv file
+     */
+    static File csv(String dataset) {
+        if (dataset.equals("real")) {
+            return new File(System.getProperty("weather.csv", "city_temperature.csv"));
+        }
+        if (dataset.startsWith("synthetic-")) {
+            int scale = Integer.parseInt(dataset.substring("synthetic-".length()));
+            Path file = Path.of(System.getProperty("java.io.tmpdir"),
+                    "synthetic_city_temperature_x" + scale + ".csv");
+            if (!Files.exists(file)) {
+                generate(file, BASE_CITIES * scale);
+            }
+            return file.toFile();
+        }
+        throw new IllegalArgumentException("Unknown dataset " + dataset);
+    }
+
+    /**
+     * Loads a dataset
+     * @param dataset   "real" or "synthetic-N"
+     * @return a manager over the dataset
+     */
+    static GlobalWeatherManager load(String dataset) {
+        try {
+            return new GlobalWeatherManager(csv(dataset));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Collects the country, state and city of every city in a manager
+     * @param manager   the manager
+     * @return one {country, state, city} per city in reading order
+     */
+    static String[][] cities(GlobalWeatherManager manager) {
+        LinkedHashSet<List<String>> cities = new LinkedHashSet<>();
+        for (WeatherReading reading : manager) {
+            cities.add(List.of(reading.country(), reading.state(), reading.city()));
+        }
+        return cities.stream().map(city -> city.toArray(new String[0])).toArray(String[][]::new);
+    }
+
+    /**
+     * Writes a csv shaped like city_temperature.csv: one reading per city per day,
+     * grouped by city, with about 2% of temperatures missing (-99)
+     * @param file      file to write
+     * @param cities    number of cities
+     */
+    static void generate(Path file, int cities) {
+        SplittableRandom random = new SplittableRandom(42);
+        Path partial = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(partial)) {
+            out.write("Region,Country,State,City,Month,Day,Year,AvgTemperature\n");
+            for (int c = 0; c < cities; c++) {
+                String location = "Region " + (c / 1000) + ",Country " + (c / 20) + ","
+                        + (c % 3 == 0 ? "State " + c / 5 : "") + ",City " + c + ",";
+                double base = 30 + random.nextDouble() * 50;
+                double trend = random.nextDouble() * 0.1 - 0.02;
+                for (LocalDate day = FIRST_DAY; !day.isAfter(LAST_DAY); day = day.plusDays(1)) {
+                    double season = 15 * Math.sin((day.getDayOfYear() - 100) * Math.PI / 182.5);
+                    double temp = random.nextInt(50) == 0 ? -99 : Math.round((base + season
+                            + trend * (day.getYear() - 1995) + random.nextGaussian() * 5) * 10) / 10.0;
+                    out.write(location + day.getMonthValue() + "," + day.getDayOfMonth() + ","
+                            + day.getYear() + "," + (temp == -99 ? "-99" : Double.toString(temp)) + "\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(partial, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}